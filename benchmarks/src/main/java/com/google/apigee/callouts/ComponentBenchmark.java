@@ -0,0 +1,156 @@
+// ComponentBenchmark.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.google.apigee.encoding.Base16;
+import com.google.apigee.fakes.FakeMessage;
+import com.google.apigee.fakes.FakeMessageContext;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The pieces of the signing path measured separately: key derivation, canonicalization, the two
+ * percent-encoders, hex encoding and payload hashing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComponentBenchmark {
+
+  @State(Scope.Thread)
+  public static class Keys {
+    final String dateStamp = BenchmarkFixtures.DATE_TIME.substring(0, 8);
+  }
+
+  @Benchmark
+  public byte[] signingKeyCached(Keys keys) throws Exception {
+    return AWSV4Signature.signingKeyCache.getSigningKey(
+        BenchmarkFixtures.SECRET,
+        keys.dateStamp,
+        BenchmarkFixtures.REGION,
+        BenchmarkFixtures.SERVICE);
+  }
+
+  @Benchmark
+  public byte[] signingKeyDerived(Keys keys) throws Exception {
+    return SigningKeyCache.deriveSigningKey(
+        BenchmarkFixtures.SECRET,
+        keys.dateStamp,
+        BenchmarkFixtures.REGION,
+        BenchmarkFixtures.SERVICE);
+  }
+
+  /** A configured signing context, ready to produce the canonical request. */
+  @State(Scope.Thread)
+  public static class Canonical {
+    @Param({"4", "16"})
+    int headerCount;
+
+    @Param({"0", "8", "32"})
+    int queryParamCount;
+
+    AWSV4Signature callout;
+    SigningContext sc;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      callout = new AWSV4Signature(BenchmarkFixtures.headerModeProperties(false));
+      FakeMessage message = BenchmarkFixtures.message(0, headerCount, queryParamCount);
+      FakeMessageContext msgCtxt = BenchmarkFixtures.context(message);
+      sc = SigningContext.acquire();
+      callout.configure(sc, msgCtxt, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      sc.release();
+    }
+  }
+
+  @Benchmark
+  public byte[] canonicalRequest(Canonical state) throws Exception {
+    state.callout.canonicalize(state.sc);
+    return state.sc.canonicalRequestHash;
+  }
+
+  @State(Scope.Thread)
+  public static class Strings {
+    final String path = "/photos/2013/05/24/a bucket key (original).jpg";
+    final String component = "value with spaces, commas & ünïcödé";
+    final byte[] digest = new byte[32];
+
+    @Setup(Level.Trial)
+    public void setup() {
+      new Random(32).nextBytes(digest);
+    }
+  }
+
+  @Benchmark
+  public String uriEncode(Strings strings) {
+    return AWSV4Signature.uriEncode(strings.path, false);
+  }
+
+  @Benchmark
+  public String encodeURIComponent(Strings strings) {
+    return AWSV4Signature.encodeURIComponent(strings.component);
+  }
+
+  @Benchmark
+  public String base16Encode(Strings strings) {
+    return Base16.encode(strings.digest);
+  }
+
+  @State(Scope.Thread)
+  public static class Payload {
+    @Param({"0", "1024", "65536"})
+    int payloadSize;
+
+    byte[] payload;
+    final byte[] out = new byte[32];
+    CryptoContext crypto;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      payload = new byte[payloadSize];
+      new Random(payloadSize).nextBytes(payload);
+      crypto = CryptoContext.get();
+    }
+  }
+
+  @Benchmark
+  public byte[] payloadHash(Payload state) throws Exception {
+    state.crypto.sha256(new ByteArrayInputStream(state.payload), state.out);
+    return state.out;
+  }
+}
@@ -0,0 +1,137 @@
+// CorpusBenchmark.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.execution.ExecutionResult;
+import com.google.apigee.fakes.FakeExecutionContext;
+import com.google.apigee.fakes.FakeMessage;
+import com.google.apigee.fakes.FakeMessageContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * execute() over a corpus of requests, cycling through them. By default the corpus is generated
+ * with seed 1 and bodies of 1 KB to 64 KB; set the corpus parameter to a directory written by
+ * CorpusGenerator, or any directory of .req cases, to use that instead:
+ *
+ * <pre>
+ * java -Dfile.encoding=UTF-8 -jar target/benchmarks.jar CorpusBenchmark -p corpus=/path/to/corpus
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+@State(Scope.Thread)
+public class CorpusBenchmark {
+  @Param({""})
+  String corpus;
+
+  @Param({"false", "true"})
+  boolean signContentSha256;
+
+  private AWSV4Signature callout;
+  private FakeMessageContext[] contexts;
+  private String[] dateTimes;
+  private FakeExecutionContext exeCtxt;
+  private int next;
+  private Path generated; // the corpus written by setup, if any
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    File dir;
+    if (corpus.equals("")) {
+      generated = Files.createTempDirectory("awsv4sig-corpus");
+      Map<String, String> options = new HashMap<String, String>();
+      options.put("body-size", "log:1k-64k");
+      new CorpusGenerator(options).generate(generated, 50);
+      dir = generated.toFile();
+    } else {
+      dir = new File(corpus);
+    }
+    List<RequestTemplate> requests = LoadDriver.loadRequests(dir);
+
+    callout =
+        new AWSV4Signature(
+            LoadDriver.calloutProperties(
+                Collections.singletonMap(
+                    "sign-content-sha256", String.valueOf(signContentSha256))));
+    exeCtxt = new FakeExecutionContext();
+    contexts = new FakeMessageContext[requests.size()];
+    dateTimes = new String[requests.size()];
+    for (int i = 0; i < contexts.length; i++) {
+      contexts[i] = requests.get(i).newContext();
+      dateTimes[i] = requests.get(i).getHeader("x-amz-date");
+      if (callout.execute(contexts[i], exeCtxt) != ExecutionResult.SUCCESS) {
+        throw new IllegalStateException(
+            String.format(
+                "signing %s failed: %s",
+                requests.get(i).getName(), contexts[i].getVariable("awsv4sig_error")));
+      }
+      reset(i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (generated != null) {
+      try (Stream<Path> paths = Files.walk(generated)) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  private void reset(int i) {
+    BenchmarkFixtures.resetHeaders((FakeMessage) contexts[i].getVariable("source"), dateTimes[i]);
+  }
+
+  @Benchmark
+  public ExecutionResult execute() {
+    int i = next;
+    next = (i + 1 == contexts.length) ? 0 : i + 1;
+    ExecutionResult result = callout.execute(contexts[i], exeCtxt);
+    // restore the source message, so that the request is the same the next time around
+    reset(i);
+    return result;
+  }
+}
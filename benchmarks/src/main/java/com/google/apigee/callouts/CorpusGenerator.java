@@ -0,0 +1,353 @@
+// CorpusGenerator.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a reproducible corpus of synthetic requests as .req files, in the layout read by
+ * ResourceDrivenTestBase and the LoadDriver: one directory per request, each holding NAME.req.
+ * The same seed and settings always produce the same corpus, and request N depends only on the
+ * seed and N, so a larger corpus extends a smaller one.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.google.apigee.callouts.CorpusGenerator \
+ *     --out corpus --count 200 --seed 7 --headers 30-40 --body-size log:1k-100m
+ * </pre>
+ *
+ * <p>Options, with their defaults:
+ *
+ * <ul>
+ *   <li>--out DIR - required
+ *   <li>--count N - the number of requests; 100
+ *   <li>--seed S - 1
+ *   <li>--headers DIST - headers per request, including Host and X-Amz-Date; 30-40
+ *   <li>--header-length DIST - characters per header value; 8-64
+ *   <li>--query-params DIST - query parameters per request; 0-50
+ *   <li>--path-depth DIST - path segments; 1-6
+ *   <li>--non-ascii P - the chance that a path segment or query value includes non-ASCII
+ *       characters, from 0 to 1; 0.1
+ *   <li>--post-fraction P - the share of requests that are POSTs with a body; 0.5
+ *   <li>--body-size DIST - bytes per POST body; log:1k-1m
+ *   <li>--host HOST - examplebucket.s3.amazonaws.com
+ * </ul>
+ *
+ * <p>A DIST is a constant ("32"), a uniform range ("8-64") or a log-uniform range ("log:1k-100m"),
+ * which suits sizes spanning orders of magnitude. Sizes accept k and m suffixes.
+ *
+ * <p>The .req files are UTF-8. TestCase reads them with the platform charset, so run consumers of a
+ * corpus with non-ASCII content using -Dfile.encoding=UTF-8 on JVMs where that is not the default.
+ */
+public final class CorpusGenerator {
+  static final String DATE_TIME = "20150830T123600Z";
+
+  private static final String[] COMMON_HEADERS = {
+    "Accept",
+    "Accept-Encoding",
+    "Accept-Language",
+    "User-Agent",
+    "Cache-Control",
+    "X-Forwarded-For",
+    "X-Forwarded-Proto",
+    "X-Request-Id",
+    "X-Amz-Meta-Owner",
+    "X-Amz-Storage-Class",
+  };
+
+  private static final String[] NON_ASCII = {
+    "é", "ü", "ß", "ñ", "ø", "Ω", "λ", "ж", "ע", "ش", "中", "文", "日", "本", "한", "😀", "🚀",
+  };
+
+  private static final String WORD_CHARS =
+      "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.~";
+
+  private static final String BODY_CHARS =
+      "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789+/";
+
+  /** An integer distribution: constant, uniform or log-uniform over an inclusive range. */
+  static final class Distribution {
+    final long min;
+    final long max;
+    final boolean logarithmic;
+
+    private Distribution(long min, long max, boolean logarithmic) {
+      this.min = min;
+      this.max = max;
+      this.logarithmic = logarithmic;
+    }
+
+    static Distribution parse(String spec) {
+      String s = spec.trim().toLowerCase(Locale.ROOT);
+      boolean logarithmic = s.startsWith("log:");
+      if (logarithmic) {
+        s = s.substring(4);
+      }
+      int dash = s.indexOf('-');
+      long min = parseSize((dash < 0) ? s : s.substring(0, dash), spec);
+      long max = (dash < 0) ? min : parseSize(s.substring(dash + 1), spec);
+      if (max < min || (logarithmic && min < 1)) {
+        throw new IllegalStateException(String.format("bad distribution: %s", spec));
+      }
+      return new Distribution(min, max, logarithmic);
+    }
+
+    private static long parseSize(String s, String spec) {
+      long multiplier = 1;
+      if (s.endsWith("k")) {
+        multiplier = 1024;
+      } else if (s.endsWith("m")) {
+        multiplier = 1024 * 1024;
+      }
+      String digits = (multiplier == 1) ? s : s.substring(0, s.length() - 1);
+      try {
+        long n = Long.parseLong(digits);
+        if (n >= 0) {
+          return n * multiplier;
+        }
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+      throw new IllegalStateException(String.format("bad distribution: %s", spec));
+    }
+
+    long sample(Random random) {
+      if (min == max) {
+        return min;
+      }
+      if (logarithmic) {
+        double logMin = Math.log(min);
+        double logMax = Math.log(max + 1);
+        return Math.min(max, (long) Math.exp(logMin + random.nextDouble() * (logMax - logMin)));
+      }
+      return min + (long) (random.nextDouble() * (max - min + 1));
+    }
+
+    int sampleInt(Random random) {
+      return (int) Math.min(Integer.MAX_VALUE, sample(random));
+    }
+  }
+
+  final long seed;
+  final Distribution headers;
+  final Distribution headerLength;
+  final Distribution queryParams;
+  final Distribution pathDepth;
+  final double nonAscii;
+  final double postFraction;
+  final Distribution bodySize;
+  final String host;
+
+  CorpusGenerator(Map<String, String> options) {
+    seed = Long.parseLong(option(options, "seed", "1"));
+    headers = Distribution.parse(option(options, "headers", "30-40"));
+    headerLength = Distribution.parse(option(options, "header-length", "8-64"));
+    queryParams = Distribution.parse(option(options, "query-params", "0-50"));
+    pathDepth = Distribution.parse(option(options, "path-depth", "1-6"));
+    nonAscii = fraction(options, "non-ascii", "0.1");
+    postFraction = fraction(options, "post-fraction", "0.5");
+    bodySize = Distribution.parse(option(options, "body-size", "log:1k-1m"));
+    host = option(options, "host", "examplebucket.s3.amazonaws.com");
+  }
+
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<String, String>();
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--") || i + 1 == args.length) {
+        throw new IllegalStateException(String.format("expected --option value at: %s", args[i]));
+      }
+      options.put(args[i].substring(2), args[++i]);
+    }
+    String out = options.get("out");
+    if (out == null) {
+      throw new IllegalStateException("--out is required");
+    }
+    int count = Integer.parseInt(option(options, "count", "100"));
+    new CorpusGenerator(options).generate(Paths.get(out), count);
+    System.out.printf("wrote %d requests to %s\n", count, out);
+  }
+
+  private static String option(Map<String, String> options, String name, String defaultValue) {
+    String value = options.get(name);
+    return (value != null) ? value : defaultValue;
+  }
+
+  private static double fraction(Map<String, String> options, String name, String defaultValue) {
+    String value = option(options, name, defaultValue);
+    double d = Double.parseDouble(value);
+    if (d < 0 || d > 1) {
+      throw new IllegalStateException(String.format("--%s must be from 0 to 1: %s", name, value));
+    }
+    return d;
+  }
+
+  void generate(Path dir, int count) throws IOException {
+    for (int n = 1; n <= count; n++) {
+      String name = String.format("gen-%05d", n);
+      Path requestDir = dir.resolve(name);
+      Files.createDirectories(requestDir);
+      try (Writer w =
+          new BufferedWriter(
+              Files.newBufferedWriter(requestDir.resolve(name + ".req"), StandardCharsets.UTF_8),
+              1 << 16)) {
+        writeRequest(new Random(requestSeed(seed, n)), w);
+      }
+    }
+  }
+
+  /**
+   * The seed for request n. java.util.Random gives nearly the same first values for nearby seeds,
+   * so the inputs are scrambled with the SplitMix64 finalizer.
+   */
+  static long requestSeed(long seed, int n) {
+    long z = seed + n * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  void writeRequest(Random random, Writer w) throws IOException {
+    boolean post = random.nextDouble() < postFraction;
+
+    // the request line; the path is raw, and may hold spaces and non-ASCII characters
+    StringBuilder line = new StringBuilder(post ? "POST " : "GET ");
+    int depth = Math.max(1, pathDepth.sampleInt(random));
+    for (int i = 0; i < depth; i++) {
+      line.append('/').append(word(random, 3 + random.nextInt(14), true));
+    }
+    int params = queryParams.sampleInt(random);
+    for (int i = 0; i < params; i++) {
+      line.append((i == 0) ? '?' : '&');
+      // some values are empty; a bare name, with no '=', is not accepted by the test fakes
+      line.append(percentEncode(word(random, 2 + random.nextInt(10), false))).append('=');
+      if (random.nextInt(10) > 0) {
+        line.append(percentEncode(word(random, random.nextInt(24), true)));
+      }
+    }
+    w.write(line.append(" HTTP/1.1\n").toString());
+
+    long body = post ? bodySize.sample(random) : 0;
+    w.write("Host:" + host + "\n");
+    w.write("X-Amz-Date:" + DATE_TIME + "\n");
+    int headerCount = headers.sampleInt(random);
+    if (post) {
+      w.write("Content-Type:application/octet-stream\n");
+      w.write("Content-Length:" + body + "\n");
+      headerCount -= 2;
+    }
+    for (int i = 0; i < headerCount - 2; i++) {
+      String name =
+          (i < COMMON_HEADERS.length) ? COMMON_HEADERS[i] : String.format("X-Custom-%02d", i);
+      w.write(name + ":" + headerValue(random, Math.max(1, headerLength.sampleInt(random))) + "\n");
+    }
+
+    if (post) {
+      w.write("\n");
+      writeBody(random, w, body);
+    }
+  }
+
+  /** A run of word characters; with mayBeNonAscii, possibly a few non-ASCII ones and a space. */
+  private String word(Random random, int length, boolean mayBeNonAscii) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append(WORD_CHARS.charAt(random.nextInt(WORD_CHARS.length())));
+    }
+    if (mayBeNonAscii && length > 2 && random.nextDouble() < nonAscii) {
+      int extra = 1 + random.nextInt(3);
+      for (int i = 0; i < extra; i++) {
+        insert(random, sb, NON_ASCII[random.nextInt(NON_ASCII.length)]);
+      }
+      insert(random, sb, " ");
+    }
+    return sb.toString();
+  }
+
+  /** Inserts after the first character, but never between the halves of a surrogate pair. */
+  private static void insert(Random random, StringBuilder sb, String s) {
+    int at = 1 + random.nextInt(sb.length() - 1);
+    if (Character.isLowSurrogate(sb.charAt(at))) {
+      at++;
+    }
+    sb.insert(at, s);
+  }
+
+  /** Printable ASCII, with the occasional run of spaces, which signing collapses. */
+  private static String headerValue(Random random, int length) {
+    StringBuilder sb = new StringBuilder(length);
+    while (sb.length() < length) {
+      if (sb.length() > 0 && sb.length() < length - 1 && random.nextInt(12) == 0) {
+        sb.append("  ");
+      } else {
+        sb.append((char) ('!' + random.nextInt('~' - '!' + 1)));
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String percentEncode(String s) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+      int c = b & 0xff;
+      if ((c >= 'a' && c <= 'z')
+          || (c >= 'A' && c <= 'Z')
+          || (c >= '0' && c <= '9')
+          || c == '-'
+          || c == '_'
+          || c == '.'
+          || c == '~') {
+        sb.append((char) c);
+      } else {
+        sb.append('%').append(String.format("%02X", c));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Text in 76-character lines. TestCase rejoins body lines with newlines and drops a trailing
+   * newline, so the body never ends with one.
+   */
+  private static void writeBody(Random random, Writer w, long size) throws IOException {
+    char[] chunk = new char[77];
+    long written = 0;
+    while (written < size) {
+      int n = (int) Math.min(76, size - written);
+      for (int i = 0; i < n; i++) {
+        chunk[i] = BODY_CHARS.charAt(random.nextInt(BODY_CHARS.length()));
+      }
+      written += n;
+      if (size - written >= 2) {
+        chunk[n] = '\n';
+        written++;
+        w.write(chunk, 0, n + 1);
+      } else {
+        w.write(chunk, 0, n);
+      }
+    }
+  }
+}
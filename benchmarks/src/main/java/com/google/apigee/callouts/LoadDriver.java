@@ -0,0 +1,297 @@
+// LoadDriver.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.execution.ExecutionResult;
+import com.google.apigee.fakes.FakeExecutionContext;
+import com.google.apigee.fakes.FakeMessage;
+import com.google.apigee.fakes.FakeMessageContext;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Drives execute() with requests read from .req files, in the format used by the tests, and
+ * reports latency percentiles and throughput.
+ *
+ * <p>With --rate, the load is open loop: each request has an intended start time on a fixed
+ * schedule, and its response time is measured from then, not from when it actually started. A
+ * stall therefore shows up in the latency of every request that should have started during it, as
+ * it would for clients of a real proxy, rather than being hidden by coordinated omission. Service
+ * time, measured from the actual start, is reported alongside. Without --rate, each thread sends
+ * its next request as soon as the previous one completes, and the two figures are the same.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.google.apigee.callouts.LoadDriver \
+ *     --requests ../callout/src/test/resources/aws-provided-vectors \
+ *     --rate 20000 --threads 4 --duration 60
+ * </pre>
+ *
+ * <p>Options:
+ *
+ * <ul>
+ *   <li>--requests DIR - a directory holding a .req file, or a directory of such directories
+ *   <li>--rate N - the total target rate in requests per second; omit for closed-loop load
+ *   <li>--threads N - the number of sending threads; default 1
+ *   <li>--duration S - the seconds to measure; default 30
+ *   <li>--warmup S - the seconds to run before measuring; default 5
+ *   <li>--key, --secret, --region, --service - the credentials and scope; the defaults are those of
+ *       the AWS test suite, so the aws-provided-vectors requests sign as expected
+ *   <li>--sign-content-sha256 true|false - default false
+ *   <li>--histogram FILE - also write the full percentile distribution to FILE
+ * </ul>
+ */
+public final class LoadDriver {
+  private static final String HOST_VARIABLE = "load.host";
+
+  private final List<RequestTemplate> requests;
+  private final AWSV4Signature callout;
+  private final int threads;
+  private final double rate; // zero for closed-loop
+  private final long warmupNanos;
+  private final long durationNanos;
+
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicReference<String> firstError = new AtomicReference<String>();
+
+  LoadDriver(
+      List<RequestTemplate> requests,
+      AWSV4Signature callout,
+      int threads,
+      double rate,
+      double warmupSeconds,
+      double durationSeconds) {
+    this.requests = requests;
+    this.callout = callout;
+    this.threads = threads;
+    this.rate = rate;
+    this.warmupNanos = (long) (warmupSeconds * 1e9);
+    this.durationNanos = (long) (durationSeconds * 1e9);
+  }
+
+  /** The latencies recorded by one thread. */
+  static final class Recording {
+    final Histogram response = new Histogram(3);
+    final Histogram service = new Histogram(3);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    String dir = options.get("requests");
+    if (dir == null) {
+      throw new IllegalStateException("--requests is required");
+    }
+    List<RequestTemplate> requests = loadRequests(new File(dir));
+
+    AWSV4Signature callout = new AWSV4Signature(calloutProperties(options));
+
+    int threads = Integer.parseInt(option(options, "threads", "1"));
+    double rate = Double.parseDouble(option(options, "rate", "0"));
+    double warmup = Double.parseDouble(option(options, "warmup", "5"));
+    double duration = Double.parseDouble(option(options, "duration", "30"));
+    if (threads < 1 || rate < 0 || warmup < 0 || duration <= 0) {
+      throw new IllegalStateException("threads, rate, warmup and duration must be positive");
+    }
+
+    System.out.printf("%d request definitions from %s\n", requests.size(), dir);
+    if (rate > 0) {
+      System.out.printf("open loop at %.0f/s on %d threads\n", rate, threads);
+    } else {
+      System.out.printf("closed loop on %d threads\n", threads);
+    }
+
+    LoadDriver driver = new LoadDriver(requests, callout, threads, rate, warmup, duration);
+    Recording total = driver.run();
+    driver.report(total, duration);
+
+    String histogramFile = options.get("histogram");
+    if (histogramFile != null) {
+      try (PrintStream out = new PrintStream(new FileOutputStream(histogramFile), false, "UTF-8")) {
+        out.println("response time, in microseconds");
+        total.response.outputPercentileDistribution(out, 1000.0);
+        out.println();
+        out.println("service time, in microseconds");
+        total.service.outputPercentileDistribution(out, 1000.0);
+      }
+      System.out.printf("percentile distribution written to %s\n", histogramFile);
+    }
+  }
+
+  /** The callout configuration; the endpoint host comes from each request's Host header. */
+  static Properties calloutProperties(Map<String, String> options) {
+    Properties props = new Properties();
+    props.setProperty("source", "source");
+    props.setProperty("key", option(options, "key", "AKIDEXAMPLE"));
+    props.setProperty(
+        "secret", option(options, "secret", "wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY"));
+    props.setProperty("region", option(options, "region", "us-east-1"));
+    props.setProperty("service", option(options, "service", "service"));
+    props.setProperty("endpoint", "https://{" + HOST_VARIABLE + "}");
+    props.setProperty("sign-content-sha256", option(options, "sign-content-sha256", "false"));
+    return props;
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<String, String>();
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--") || i + 1 == args.length) {
+        throw new IllegalStateException(String.format("expected --option value at: %s", args[i]));
+      }
+      options.put(args[i].substring(2), args[++i]);
+    }
+    return options;
+  }
+
+  private static String option(Map<String, String> options, String name, String defaultValue) {
+    String value = options.get(name);
+    return (value != null) ? value : defaultValue;
+  }
+
+  static List<RequestTemplate> loadRequests(File dir) throws Exception {
+    File[] dirs;
+    if (hasRequestFile(dir)) {
+      dirs = new File[] {dir};
+    } else {
+      dirs = dir.listFiles(f -> f.isDirectory() && hasRequestFile(f));
+      if (dirs == null || dirs.length == 0) {
+        throw new IllegalStateException(String.format("no .req files found under %s", dir));
+      }
+      Arrays.sort(dirs);
+    }
+    List<RequestTemplate> requests = new ArrayList<RequestTemplate>();
+    for (File d : dirs) {
+      RequestTemplate request = RequestTemplate.of(new TestCase(d.getName(), d.toPath()));
+      if (request.getHeader("host") == null) {
+        throw new IllegalStateException(String.format("no host header in %s", d));
+      }
+      request.setContextVariable(HOST_VARIABLE, request.getHeader("host"));
+      requests.add(request);
+    }
+    return requests;
+  }
+
+  private static boolean hasRequestFile(File dir) {
+    File[] files = dir.listFiles(f -> f.isFile() && f.getName().endsWith(".req"));
+    return files != null && files.length > 0;
+  }
+
+  Recording run() throws InterruptedException {
+    final long start = System.nanoTime() + 10_000_000L; // time for the threads to get going
+    final long measureStart = start + warmupNanos;
+    final long end = measureStart + durationNanos;
+    final Recording[] recordings = new Recording[threads];
+    List<Thread> workers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      final int id = t;
+      recordings[t] = new Recording();
+      Thread worker =
+          new Thread(() -> drive(id, start, measureStart, end, recordings[id]), "load-" + t);
+      workers.add(worker);
+      worker.start();
+    }
+    Recording total = new Recording();
+    for (int t = 0; t < threads; t++) {
+      workers.get(t).join();
+      total.response.add(recordings[t].response);
+      total.service.add(recordings[t].service);
+    }
+    return total;
+  }
+
+  private void drive(int id, long start, long measureStart, long end, Recording recording) {
+    FakeExecutionContext exeCtxt = new FakeExecutionContext();
+    // with a target rate, the threads share the schedule, each taking every threads'th slot
+    long interval = (rate > 0) ? (long) (threads * 1e9 / rate) : 0;
+    long intended = (rate > 0) ? start + (long) (id * 1e9 / rate) : start;
+    int i = id;
+    waitUntil(start);
+    while (intended < end) {
+      FakeMessageContext msgCtxt = requests.get(i++ % requests.size()).newContext();
+      if (rate > 0) {
+        waitUntil(intended);
+      }
+      long begin = System.nanoTime();
+      ExecutionResult result = callout.execute(msgCtxt, exeCtxt);
+      long done = System.nanoTime();
+      if (result != ExecutionResult.SUCCESS
+          || ((FakeMessage) msgCtxt.getVariable("source")).getHeader("authorization") == null) {
+        errors.incrementAndGet();
+        firstError.compareAndSet(null, String.valueOf(msgCtxt.getVariable("awsv4sig_error")));
+      }
+      if (rate > 0) {
+        if (intended >= measureStart) {
+          recording.response.recordValue(done - intended);
+          recording.service.recordValue(done - begin);
+        }
+        intended += interval;
+      } else {
+        if (begin >= measureStart) {
+          recording.response.recordValue(done - begin);
+          recording.service.recordValue(done - begin);
+        }
+        intended = done;
+      }
+    }
+  }
+
+  private static void waitUntil(long deadline) {
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      if (remaining > 100_000L) {
+        LockSupport.parkNanos(remaining - 50_000L);
+      } else {
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  void report(Recording total, double durationSeconds) {
+    long count = total.response.getTotalCount();
+    System.out.printf(
+        "\n%d requests in %.1f s: %.0f/s, %d errors\n",
+        count, durationSeconds, count / durationSeconds, errors.get());
+    if (firstError.get() != null) {
+      System.out.printf("first error: %s\n", firstError.get());
+    }
+    System.out.printf(
+        "%-14s %10s %10s %10s %10s %10s\n", "latency (us)", "p50", "p90", "p99", "p99.9", "max");
+    printPercentiles("response time", total.response);
+    printPercentiles("service time", total.service);
+  }
+
+  private static void printPercentiles(String label, Histogram h) {
+    System.out.printf(
+        "%-14s %10.1f %10.1f %10.1f %10.1f %10.1f\n",
+        label,
+        h.getValueAtPercentile(50) / 1000.0,
+        h.getValueAtPercentile(90) / 1000.0,
+        h.getValueAtPercentile(99) / 1000.0,
+        h.getValueAtPercentile(99.9) / 1000.0,
+        h.getMaxValue() / 1000.0);
+  }
+}
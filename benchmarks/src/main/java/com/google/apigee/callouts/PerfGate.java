@@ -0,0 +1,326 @@
+// PerfGate.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs a short, fixed suite of the signing benchmarks and compares each result with a stored
+ * baseline. A case fails when its throughput falls below the baseline by more than the throughput
+ * tolerance, or when its allocation per operation rises above the baseline by more than the
+ * allocation tolerance. Throughput is noisy on shared machines, so it fails only when the upper
+ * bound of the 99.9% confidence interval is below the threshold; allocation is deterministic
+ * enough to compare the score directly. The comparison is written as a JSON report, and the process
+ * exits with status 1 if any case fails.
+ *
+ * <p>Configured with system properties:
+ *
+ * <ul>
+ *   <li>perf.gate.baseline - the baseline properties file
+ *   <li>perf.gate.report - the JSON report to write
+ *   <li>perf.gate.throughputTolerance - the allowed fractional drop in ops/s; default 0.20
+ *   <li>perf.gate.allocTolerance - the allowed fractional rise in bytes/op; default 0.10
+ *   <li>perf.gate.update - when true, record the results as the new baseline instead of comparing
+ * </ul>
+ */
+public final class PerfGate {
+  static final double DEFAULT_THROUGHPUT_TOLERANCE = 0.20;
+  static final double DEFAULT_ALLOC_TOLERANCE = 0.10;
+
+  /** Absolute headroom for allocation, so that cases allocating almost nothing do not flap. */
+  static final double ALLOC_SLACK_BYTES = 32;
+
+  private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+  /** One benchmark method with fixed parameters. */
+  static final class Case {
+    final String name;
+    final String benchmark;
+    final String[] params;
+
+    Case(String name, String benchmark, String... params) {
+      this.name = name;
+      this.benchmark = benchmark;
+      this.params = params;
+    }
+  }
+
+  static final Case[] SUITE = {
+    new Case(
+        "execute.header",
+        "ExecuteBenchmark.execute",
+        "payloadSize=1024",
+        "headerCount=4",
+        "queryParamCount=8",
+        "hmacMidstate=true"),
+    new Case(
+        "execute.header.large",
+        "ExecuteBenchmark.execute",
+        "payloadSize=65536",
+        "headerCount=16",
+        "queryParamCount=32",
+        "hmacMidstate=true"),
+    new Case("execute.presign", "PresignBenchmark.execute", "hmacMidstate=true"),
+    new Case(
+        "canonicalRequest",
+        "ComponentBenchmark.canonicalRequest",
+        "headerCount=16",
+        "queryParamCount=32"),
+    new Case("signingKey.cached", "ComponentBenchmark.signingKeyCached"),
+  };
+
+  /** The measured and baseline figures for one case. */
+  static final class Outcome {
+    final String name;
+    final double opsPerSec;
+    final double opsPerSecError;
+    final double allocBytesPerOp;
+    Double baselineOpsPerSec;
+    Double baselineAllocBytesPerOp;
+    String status;
+
+    Outcome(String name, double opsPerSec, double opsPerSecError, double allocBytesPerOp) {
+      this.name = name;
+      this.opsPerSec = opsPerSec;
+      this.opsPerSecError = opsPerSecError;
+      this.allocBytesPerOp = allocBytesPerOp;
+    }
+  }
+
+  private PerfGate() {}
+
+  public static void main(String[] args) throws Exception {
+    Path baselinePath =
+        Paths.get(System.getProperty("perf.gate.baseline", "perf-baseline.properties"));
+    Path reportPath =
+        Paths.get(System.getProperty("perf.gate.report", "target/perf-gate-report.json"));
+    double throughputTolerance =
+        tolerance("perf.gate.throughputTolerance", DEFAULT_THROUGHPUT_TOLERANCE);
+    double allocTolerance = tolerance("perf.gate.allocTolerance", DEFAULT_ALLOC_TOLERANCE);
+    boolean update = Boolean.parseBoolean(System.getProperty("perf.gate.update", "false"));
+
+    List<Outcome> outcomes = new ArrayList<Outcome>();
+    for (Case c : SUITE) {
+      outcomes.add(run(c));
+    }
+
+    if (update) {
+      writeBaseline(baselinePath, outcomes);
+      for (Outcome outcome : outcomes) {
+        outcome.status = "RECORDED";
+      }
+      writeReport(reportPath, outcomes, throughputTolerance, allocTolerance, true);
+      System.out.printf("perf gate: recorded a new baseline in %s\n", baselinePath);
+      return;
+    }
+
+    if (!Files.isRegularFile(baselinePath)) {
+      throw new IllegalStateException(
+          String.format("perf gate baseline not found: %s", baselinePath));
+    }
+    Properties baseline = new Properties();
+    try (InputStream in = Files.newInputStream(baselinePath)) {
+      baseline.load(in);
+    }
+    boolean passed = compare(outcomes, baseline, throughputTolerance, allocTolerance);
+    writeReport(reportPath, outcomes, throughputTolerance, allocTolerance, passed);
+
+    for (Outcome outcome : outcomes) {
+      System.out.printf(
+          "perf gate: %-22s %-5s %12.1f +/- %.1f ops/s (baseline %s) %.1f B/op (baseline %s)\n",
+          outcome.name,
+          outcome.status,
+          outcome.opsPerSec,
+          outcome.opsPerSecError,
+          format(outcome.baselineOpsPerSec),
+          outcome.allocBytesPerOp,
+          format(outcome.baselineAllocBytesPerOp));
+    }
+    System.out.printf("perf gate: report written to %s\n", reportPath);
+    if (!passed) {
+      System.err.println("perf gate: FAILED, performance regressed beyond the tolerance");
+      System.exit(1);
+    }
+  }
+
+  private static double tolerance(String property, double defaultValue) {
+    String value = System.getProperty(property);
+    if (value == null || value.trim().equals("")) {
+      return defaultValue;
+    }
+    try {
+      double d = Double.parseDouble(value.trim());
+      if (d >= 0) {
+        return d;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new IllegalStateException(
+        String.format("%s must be a non-negative number: %s", property, value));
+  }
+
+  private static Outcome run(Case c) throws Exception {
+    ChainedOptionsBuilder builder =
+        new OptionsBuilder()
+            .include("\\." + c.benchmark.replace(".", "\\.") + "$")
+            .addProfiler(GCProfiler.class)
+            .warmupIterations(3)
+            .warmupTime(TimeValue.seconds(1))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.seconds(1))
+            .forks(1)
+            .shouldFailOnError(true);
+    for (String param : c.params) {
+      int eq = param.indexOf('=');
+      builder.param(param.substring(0, eq), param.substring(eq + 1));
+    }
+    Collection<RunResult> results = new Runner(builder.build()).run();
+    if (results.size() != 1) {
+      throw new IllegalStateException(
+          String.format("expected one result for %s, got %d", c.name, results.size()));
+    }
+    RunResult result = results.iterator().next();
+    Result alloc = result.getSecondaryResults().get(ALLOC_NORM);
+    if (alloc == null) {
+      throw new IllegalStateException(String.format("no %s result for %s", ALLOC_NORM, c.name));
+    }
+    Result primary = result.getPrimaryResult();
+    double error = Double.isNaN(primary.getScoreError()) ? 0 : primary.getScoreError();
+    return new Outcome(c.name, primary.getScore(), error, alloc.getScore());
+  }
+
+  /** Sets the status of each outcome, and returns false if any of them regressed. */
+  static boolean compare(
+      List<Outcome> outcomes,
+      Properties baseline,
+      double throughputTolerance,
+      double allocTolerance) {
+    boolean passed = true;
+    for (Outcome outcome : outcomes) {
+      outcome.baselineOpsPerSec = baselineValue(baseline, outcome.name + ".ops_per_sec");
+      outcome.baselineAllocBytesPerOp =
+          baselineValue(baseline, outcome.name + ".alloc_bytes_per_op");
+      if (outcome.baselineOpsPerSec == null || outcome.baselineAllocBytesPerOp == null) {
+        outcome.status = "NEW";
+        continue;
+      }
+      boolean slower =
+          outcome.opsPerSec + outcome.opsPerSecError
+              < outcome.baselineOpsPerSec * (1 - throughputTolerance);
+      boolean fatter =
+          outcome.allocBytesPerOp
+              > outcome.baselineAllocBytesPerOp * (1 + allocTolerance) + ALLOC_SLACK_BYTES;
+      outcome.status = (slower || fatter) ? "FAIL" : "PASS";
+      passed &= !(slower || fatter);
+    }
+    return passed;
+  }
+
+  private static Double baselineValue(Properties baseline, String key) {
+    String value = baseline.getProperty(key);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Double.valueOf(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException(String.format("bad baseline value for %s: %s", key, value));
+    }
+  }
+
+  private static void writeBaseline(Path path, List<Outcome> outcomes) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# Baseline for the perf-gate profile; regenerate with -Dperf.gate.update=true\n");
+    sb.append("# on the machine that runs the gate.\n");
+    for (Outcome outcome : outcomes) {
+      sb.append(
+          String.format(Locale.ROOT, "%s.ops_per_sec=%.1f\n", outcome.name, outcome.opsPerSec));
+      sb.append(
+          String.format(
+              Locale.ROOT, "%s.alloc_bytes_per_op=%.1f\n", outcome.name, outcome.allocBytesPerOp));
+    }
+    write(path, sb.toString());
+  }
+
+  private static void writeReport(
+      Path path,
+      List<Outcome> outcomes,
+      double throughputTolerance,
+      double allocTolerance,
+      boolean passed)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    sb.append(String.format(Locale.ROOT, "  \"throughputTolerance\": %s,\n", throughputTolerance));
+    sb.append(String.format(Locale.ROOT, "  \"allocTolerance\": %s,\n", allocTolerance));
+    sb.append(String.format(Locale.ROOT, "  \"allocSlackBytes\": %s,\n", ALLOC_SLACK_BYTES));
+    sb.append("  \"passed\": ").append(passed).append(",\n");
+    sb.append("  \"cases\": [");
+    for (int i = 0; i < outcomes.size(); i++) {
+      Outcome outcome = outcomes.get(i);
+      sb.append((i == 0) ? "\n" : ",\n");
+      sb.append("    {\"name\": \"").append(outcome.name).append('"');
+      sb.append(", \"status\": \"").append(outcome.status).append('"');
+      sb.append(", \"opsPerSec\": ").append(json(outcome.opsPerSec));
+      sb.append(", \"opsPerSecError\": ").append(json(outcome.opsPerSecError));
+      sb.append(", \"baselineOpsPerSec\": ").append(json(outcome.baselineOpsPerSec));
+      sb.append(", \"allocBytesPerOp\": ").append(json(outcome.allocBytesPerOp));
+      sb.append(", \"baselineAllocBytesPerOp\": ").append(json(outcome.baselineAllocBytesPerOp));
+      sb.append('}');
+    }
+    sb.append("\n  ]\n}\n");
+    write(path, sb.toString());
+  }
+
+  private static void write(Path path, String content) throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      w.write(content);
+    }
+  }
+
+  private static String json(Double d) {
+    return (d == null) ? "null" : String.format(Locale.ROOT, "%.1f", d);
+  }
+
+  private static String format(Double d) {
+    return (d == null) ? "none" : String.format(Locale.ROOT, "%.1f", d);
+  }
+}
@@ -0,0 +1,66 @@
+// PresignBenchmark.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.execution.ExecutionResult;
+import com.google.apigee.fakes.FakeExecutionContext;
+import com.google.apigee.fakes.FakeMessageContext;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end execute() in presign mode, producing a presigned URL. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PresignBenchmark {
+  @Param({"false", "true"})
+  boolean hmacMidstate;
+
+  private AWSV4Signature callout;
+  private FakeMessageContext msgCtxt;
+  private FakeExecutionContext exeCtxt;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    callout = new AWSV4Signature(BenchmarkFixtures.presignProperties(hmacMidstate));
+    msgCtxt = BenchmarkFixtures.context(null);
+    exeCtxt = new FakeExecutionContext();
+    if (callout.execute(msgCtxt, exeCtxt) != ExecutionResult.SUCCESS) {
+      throw new IllegalStateException("signing failed: " + msgCtxt.getVariable("awsv4sig_error"));
+    }
+  }
+
+  @Benchmark
+  public ExecutionResult execute() {
+    return callout.execute(msgCtxt, exeCtxt);
+  }
+}
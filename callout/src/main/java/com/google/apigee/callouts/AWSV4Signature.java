@@ -28,47 +28,160 @@ import com.apigee.flow.execution.spi.Execution;
 import com.apigee.flow.message.Message;
 import com.apigee.flow.message.MessageContext;
 import com.google.apigee.encoding.Base16;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import com.google.apigee.encoding.PercentEncoder;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Paths;
 import java.security.MessageDigest;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.util.Objects;
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 public class AWSV4Signature extends SignatureCalloutBase implements Execution {
+  static final String ALGORITHM = "AWS4-HMAC-SHA256";
   protected static final DateTimeFormatter xAmzDateFormatter =
       DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
   protected static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+  static final SigningKeyCache signingKeyCache =
+      new SigningKeyCache(SigningKeyCache.DEFAULT_MAX_ENTRIES);
+  static final SignedHeadersCache signedHeadersCache =
+      new SignedHeadersCache(SignedHeadersCache.DEFAULT_SLOTS);
+
+  static final int DEFAULT_CANONICAL_CACHE_SIZE = 1024;
+
+  private final StaticConfiguration staticConfig;
+  private final AmzDateClock clock;
+
+  // memos of canonical URIs, by raw path, and canonical query strings, by raw query; these are
+  // null unless the canonical-cache property is true
+  private final LruCache<String, String> canonicalUriCache;
+  private final LruCache<String, String> canonicalUriWithSlashCache;
+  private final LruCache<String, String> canonicalQueryCache;
+
+  // the filter compiled from the last resolved values of dynamic signed-headers and
+  // unsigned-headers properties; requests that resolve to the same values reuse it
+  private volatile DynamicHeaderFilter lastHeaderFilter;
 
   public AWSV4Signature(Map properties) {
+    this(properties, AmzDateClock.SYSTEM);
+  }
+
+  /** Uses the given clock for the signing time; tests can supply a fixed clock. */
+  AWSV4Signature(Map properties, AmzDateClock clock) {
     super(properties);
+    this.clock = clock;
+    this.staticConfig = new StaticConfiguration();
+    if (staticConfig.canonicalCacheSize > 0) {
+      canonicalUriCache = new LruCache<String, String>(staticConfig.canonicalCacheSize);
+      canonicalUriWithSlashCache = new LruCache<String, String>(staticConfig.canonicalCacheSize);
+      canonicalQueryCache = new LruCache<String, String>(staticConfig.canonicalCacheSize);
+    } else {
+      canonicalUriCache = null;
+      canonicalUriWithSlashCache = null;
+      canonicalQueryCache = null;
+    }
+  }
+
+  /**
+   * The parts of the configuration that are literals in the policy XML, computed once at
+   * construction. A null field means the property is dynamic (or absent) and gets resolved on
+   * each request.
+   */
+  final class StaticConfiguration {
+    final Endpoint endpoint;
+    final String region;
+    final String service;
+    final String scopeSuffix;
+    final Boolean insureTrailingSlashOnPath;
+    final Boolean signedContentSha256;
+    final Boolean hmacMidstate;
+    final Boolean debug;
+    final HeaderFilter headerFilter;
+    final int canonicalCacheSize; // zero when the cache is disabled
+
+    StaticConfiguration() {
+      String endpointLiteral = literal("endpoint");
+      endpoint = (endpointLiteral != null) ? Endpoint.parse(endpointLiteral) : null;
+      region = literal("region");
+      service = literal("service");
+      scopeSuffix =
+          (region != null && service != null) ? scopeSuffix(region, service) : null;
+      insureTrailingSlashOnPath = literalFlag("insure-trailing-slash", false);
+      signedContentSha256 = literalFlag("sign-content-sha256", false);
+      hmacMidstate = literalFlag("hmac-midstate", false);
+      debug = literalFlag("debug", false);
+      headerFilter =
+          (isDynamic("signed-headers") || isDynamic("unsigned-headers"))
+              ? null
+              : HeaderFilter.compile(literal("signed-headers"), literal("unsigned-headers"));
+      for (String name : new String[] {"canonical-cache", "canonical-cache-size"}) {
+        if (isDynamic(name)) {
+          throw new IllegalStateException(
+              String.format("%s must be a literal value, not a variable reference", name));
+        }
+      }
+      canonicalCacheSize =
+          Boolean.TRUE.equals(literalFlag("canonical-cache", false))
+              ? parseCacheSize(literal("canonical-cache-size"))
+              : 0;
+    }
+
+    private int parseCacheSize(String size) {
+      if (size == null) {
+        return DEFAULT_CANONICAL_CACHE_SIZE;
+      }
+      try {
+        int n = Integer.parseInt(size);
+        if (n > 0) {
+          return n;
+        }
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+      throw new IllegalStateException(
+          String.format("canonical-cache-size must be a positive integer: %s", size));
+    }
+
+    private boolean isDynamic(String name) {
+      return isPropertySet(name) && !isStaticProperty(name);
+    }
+
+    private String literal(String name) {
+      return isStaticProperty(name) ? _getStringProp(null, name, null) : null;
+    }
+
+    private Boolean literalFlag(String name, boolean defaultValue) {
+      if (isStaticProperty(name)) {
+        return Boolean.valueOf(literal(name).equalsIgnoreCase("true"));
+      }
+      return isPropertySet(name) ? null : Boolean.valueOf(defaultValue);
+    }
+  }
+
+  static String scopeSuffix(String region, String service) {
+    return "/" + region + "/" + service + "/aws4_request";
   }
 
   protected static String hex(byte[] a) {
-    return Base16.encode(a).toLowerCase();
+    return Base16.encode(a);
   }
 
   protected static byte[] sha256(String s) throws java.security.NoSuchAlgorithmException {
-    MessageDigest digest = MessageDigest.getInstance("SHA-256");
-    byte[] output = digest.digest(s.getBytes(StandardCharsets.UTF_8));
-    return output;
+    return sha256(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  protected static byte[] sha256(byte[] a) throws java.security.NoSuchAlgorithmException {
+    return CryptoContext.get().sha256(a);
+  }
+
+  protected static byte[] sha256(InputStream in) throws IOException {
+    return CryptoContext.get().sha256(in);
   }
 
   static byte[] hmacsha256(String data, byte[] key) throws Exception {
-    String algorithm = "HmacSHA256";
-    Mac mac = Mac.getInstance(algorithm);
-    mac.init(new SecretKeySpec(key, algorithm));
-    return mac.doFinal(data.getBytes("UTF-8"));
+    return CryptoContext.get().hmacsha256(data.getBytes(StandardCharsets.UTF_8), key);
   }
 
   private Message getSource(MessageContext msgCtxt) {
@@ -81,19 +194,72 @@ public class AWSV4Signature extends SignatureCalloutBase implements Execution {
     return sourceMessage;
   }
 
+  @Override
+  protected boolean getDebug(MessageContext msgCtxt) throws Exception {
+    return (staticConfig.debug != null) ? staticConfig.debug : super.getDebug(msgCtxt);
+  }
+
   protected boolean wantInsureTrailingSlashOnPath(MessageContext msgCtxt) throws Exception {
+    if (staticConfig.insureTrailingSlashOnPath != null) {
+      return staticConfig.insureTrailingSlashOnPath;
+    }
     return _getBooleanProperty(msgCtxt, "insure-trailing-slash", false);
   }
 
   protected boolean wantSignedContentSha256(MessageContext msgCtxt) throws Exception {
+    if (staticConfig.signedContentSha256 != null) {
+      return staticConfig.signedContentSha256;
+    }
     return _getBooleanProperty(msgCtxt, "sign-content-sha256", false);
   }
 
+  protected boolean wantHmacMidstate(MessageContext msgCtxt) throws Exception {
+    if (staticConfig.hmacMidstate != null) {
+      return staticConfig.hmacMidstate;
+    }
+    return _getBooleanProperty(msgCtxt, "hmac-midstate", false);
+  }
+
+  private HeaderFilter getHeaderFilter(MessageContext msgCtxt) {
+    if (staticConfig.headerFilter != null) {
+      return staticConfig.headerFilter;
+    }
+    String signedHeaders = _getOptionalString(msgCtxt, "signed-headers");
+    String unsignedHeaders = _getOptionalString(msgCtxt, "unsigned-headers");
+    DynamicHeaderFilter last = lastHeaderFilter;
+    if (last != null
+        && Objects.equals(last.signedHeaders, signedHeaders)
+        && Objects.equals(last.unsignedHeaders, unsignedHeaders)) {
+      return last.filter;
+    }
+    last = new DynamicHeaderFilter(signedHeaders, unsignedHeaders);
+    lastHeaderFilter = last;
+    return last.filter;
+  }
+
+  private static final class DynamicHeaderFilter {
+    final String signedHeaders;
+    final String unsignedHeaders;
+    final HeaderFilter filter;
+
+    DynamicHeaderFilter(String signedHeaders, String unsignedHeaders) {
+      this.signedHeaders = signedHeaders;
+      this.unsignedHeaders = unsignedHeaders;
+      this.filter = HeaderFilter.compile(signedHeaders, unsignedHeaders);
+    }
+  }
+
   private String getService(MessageContext msgCtxt) {
+    if (staticConfig.service != null) {
+      return staticConfig.service;
+    }
     return _getRequiredString(msgCtxt, "service");
   }
 
   private String getRegion(MessageContext msgCtxt) {
+    if (staticConfig.region != null) {
+      return staticConfig.region;
+    }
     return _getRequiredString(msgCtxt, "region");
   }
 
@@ -115,325 +281,307 @@ public class AWSV4Signature extends SignatureCalloutBase implements Execution {
     msgCtxt.removeVariable(varName("sts"));
     msgCtxt.removeVariable(varName("exception"));
     msgCtxt.removeVariable(varName("stacktrace"));
-  }
-
-  static class Canonicalized {
-    public String signedHeaders;
-    public String request;
-
-    public Canonicalized(String headers, String request) {
-      this.signedHeaders = headers;
-      this.request = request;
-    }
+    msgCtxt.removeVariable(varName("signing_key_cache_hits"));
+    msgCtxt.removeVariable(varName("signing_key_cache_misses"));
+    msgCtxt.removeVariable(varName("canonical_uri_cache_hits"));
+    msgCtxt.removeVariable(varName("canonical_uri_cache_misses"));
+    msgCtxt.removeVariable(varName("canonical_query_cache_hits"));
+    msgCtxt.removeVariable(varName("canonical_query_cache_misses"));
   }
 
   public static String encodeURIComponent(String s) {
-    String result;
-    try {
-      result =
-          URLEncoder.encode(s, "UTF-8")
-              .replaceAll("\\+", "%20")
-              .replaceAll("\\%21", "!")
-              .replaceAll("\\%27", "'")
-              .replaceAll("\\%28", "(")
-              .replaceAll("\\%29", ")")
-              .replaceAll("\\%7E", "~");
-    } catch (UnsupportedEncodingException e) {
-      result = s;
-    }
-    return result;
+    return PercentEncoder.encode(s, PercentEncoder.URI_COMPONENT);
   }
 
   public static String uriEncode(CharSequence input, boolean encodeSlash) {
-    StringBuilder result = new StringBuilder();
-    for (int i = 0; i < input.length(); i++) {
-      char ch = input.charAt(i);
-      if ((ch >= 'A' && ch <= 'Z')
-          || (ch >= 'a' && ch <= 'z')
-          || (ch >= '0' && ch <= '9')
-          || ch == '_'
-          || ch == '-'
-          || ch == '~'
-          || ch == '.') {
-        result.append(ch);
-      } else if (ch == '/') {
-        result.append(encodeSlash ? "%2F" : ch);
-      } else {
-        result.append("%").append(Base16.byteToHex((byte) ch));
-      }
-    }
-    return result.toString();
+    return PercentEncoder.encode(
+        input.toString(),
+        encodeSlash ? PercentEncoder.UNRESERVED : PercentEncoder.UNRESERVED_AND_SLASH);
   }
 
   public static String normalizeSpace(String s) {
-    return s.trim().replaceAll("( )+", " ");
-  }
-
-  public class SignConfiguration {
-    Message sourceMessage;
-    String endpoint;
-    String host;
-    String verb;
-    String path;
-    String dateTimeStamp;
-    String region;
-    String service;
-    String dateStamp;
-    String contentSha256;
-    String secret;
-    String key;
-    boolean wantSignedContentSha256;
-    boolean insureTrailingSlashOnPath;
-    boolean debug;
-    String scope;
-    String stringToSign;
-    String output;
-    String expiry;
-    MessageContext msgCtxt;
-    List<String> encodedQparams = new ArrayList<String>();
-    Map<String, String> headers = new TreeMap<String, String>();
-
-    private void applyDate(String dateOverride) {
-      if (dateOverride != null) {
-        this.dateTimeStamp = dateOverride;
-      } else {
-        ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
-        this.dateTimeStamp = xAmzDateFormatter.format(now);
-      }
-      this.dateStamp = this.dateTimeStamp.substring(0, 8);
-    }
-
-    private void setScope() {
-      scope = this.dateStamp + "/" + this.region + "/" + this.service + "/aws4_request";
-    }
+    return HeaderNormalizer.normalizeValue(s);
+  }
 
-    private List<String> getHeaderValues(String headerName) {
-      return headerName.equals("host")
-          ? Collections.singletonList(this.host)
-          : sourceMessage.getHeaders(headerName);
+  private static String joinHeaderValues(List<String> headerValues) {
+    if (headerValues.size() == 1) {
+      return normalizeSpace(headerValues.get(0));
     }
-
-    private String determinePath() {
-      String endpointWithoutScheme = endpoint.substring(8);
-      if (endpointWithoutScheme.contains("/")) {
-        return endpointWithoutScheme.substring(endpointWithoutScheme.indexOf("/"));
-      }
-      return sourceMessage.getVariable("path").toString();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < headerValues.size(); i++) {
+      if (i > 0) sb.append(',');
+      sb.append(normalizeSpace(headerValues.get(i)));
     }
+    return sb.toString();
+  }
 
-    private String determineHost() {
-      String endpointWithoutScheme = endpoint.substring(8);
-      if (endpointWithoutScheme.contains("/")) {
-        return endpointWithoutScheme.substring(0, endpointWithoutScheme.indexOf("/"));
-      }
-      return endpointWithoutScheme;
+  private void applyDate(SigningContext sc, String dateOverride) {
+    if (dateOverride != null) {
+      sc.stamp = null;
+      sc.dateTimeStamp = dateOverride;
+      sc.dateStamp = dateOverride.substring(0, 8);
+    } else {
+      sc.stamp = clock.now();
+      sc.dateTimeStamp = sc.stamp.dateTimeStamp;
+      sc.dateStamp = sc.stamp.dateStamp;
     }
+  }
 
-    public SignConfiguration(MessageContext msgCtxt, boolean debug) throws Exception {
-      wantSignedContentSha256 = false;
-      this.debug = debug;
-      this.msgCtxt = msgCtxt;
-
-      endpoint = getEndpoint(msgCtxt);
-      host = determineHost();
-      // TODO: validate the endpoint. Does it look like an https url?
-      region = getRegion(msgCtxt);
-      service = getService(msgCtxt);
-      secret = getSecret(msgCtxt);
-      insureTrailingSlashOnPath = wantInsureTrailingSlashOnPath(msgCtxt);
-      key = getKey(msgCtxt);
-
-      sourceMessage = getSource(msgCtxt);
-
-      if (sourceMessage != null) {
-        // get configuration from a previously created message
-        verb = sourceMessage.getVariable("verb").toString().toUpperCase();
-        path = determinePath();
-
-        applyDate(sourceMessage.getHeader("x-amz-date"));
-
-        String content = sourceMessage.getContent();
-        contentSha256 = (content == null) ? hex(sha256("")) : hex(sha256(content));
+  private void setScope(SigningContext sc) {
+    String suffix =
+        (staticConfig.scopeSuffix != null)
+            ? staticConfig.scopeSuffix
+            : scopeSuffix(sc.region, sc.service);
+    sc.scope = (sc.stamp != null) ? sc.stamp.scope(suffix) : sc.dateStamp + suffix;
+  }
 
-        this.wantSignedContentSha256 = wantSignedContentSha256(msgCtxt);
-        if (wantSignedContentSha256) {
-          headers.put("x-amz-content-sha256", contentSha256);
-        }
+  private String determinePath(SigningContext sc) {
+    if (sc.endpoint.path != null) {
+      return sc.endpoint.path;
+    }
+    return sc.sourceMessage.getVariable("path").toString();
+  }
 
-        // pre-process headers
-        List<String> headerList = new ArrayList<String>(sourceMessage.getHeaderNames());
-        Collections.sort(headerList);
-        for (String headerName : headerList) {
-          List<String> headerValues = getHeaderValues(headerName);
+  /** Resolves the configuration for this request, and collects the headers and query to sign. */
+  void configure(SigningContext sc, MessageContext msgCtxt, boolean debug) throws Exception {
+    sc.debug = debug;
+    sc.msgCtxt = msgCtxt;
+
+    sc.endpoint =
+        (staticConfig.endpoint != null) ? staticConfig.endpoint : Endpoint.of(getEndpoint(msgCtxt));
+    sc.host = sc.endpoint.host;
+    sc.region = getRegion(msgCtxt);
+    sc.service = getService(msgCtxt);
+    sc.secret = getSecret(msgCtxt);
+    sc.insureTrailingSlashOnPath = wantInsureTrailingSlashOnPath(msgCtxt);
+    sc.hmacMidstate = wantHmacMidstate(msgCtxt);
+    sc.key = getKey(msgCtxt);
+
+    sc.sourceMessage = getSource(msgCtxt);
+
+    if (sc.sourceMessage != null) {
+      Message sourceMessage = sc.sourceMessage;
+      // get configuration from a previously created message
+      sc.verb = sourceMessage.getVariable("verb").toString().toUpperCase();
+      sc.path = determinePath(sc);
+
+      applyDate(sc, sourceMessage.getHeader("x-amz-date"));
+
+      // hash the raw bytes of the payload, without decoding it into a String
+      sc.crypto.sha256(sourceMessage.getContentAsStream(), sc.payloadHash);
+
+      sc.wantSignedContentSha256 = wantSignedContentSha256(msgCtxt);
+      if (sc.wantSignedContentSha256) {
+        sc.contentSha256 = hex(sc.payloadHash);
+        sc.headers.put("x-amz-content-sha256", sc.contentSha256);
+      }
 
-          String joinedValue =
-              headerValues.stream().map(s -> normalizeSpace(s)).collect(Collectors.joining(","));
-          headers.put(headerName.toLowerCase(), joinedValue);
+      // pre-process headers; values are fetched only for the headers that get signed
+      HeaderFilter headerFilter = getHeaderFilter(msgCtxt);
+      for (String headerName : sourceMessage.getHeaderNames()) {
+        String name = HeaderNormalizer.lowerCaseName(headerName);
+        if (!name.equals("host") && headerFilter.isSigned(name)) {
+          sc.headers.put(name, joinHeaderValues(sourceMessage.getHeaders(headerName)));
         }
-        headers.put("host", host);
-        if (!headers.containsKey("x-amz-date")) {
-          headers.put("x-amz-date", dateTimeStamp);
+      }
+      sc.headers.put("host", sc.host);
+      sc.headers.putIfAbsent("x-amz-date", sc.dateTimeStamp);
+
+      // parse the raw query when it is available, so that each pair is decoded and encoded once
+      Object rawQuery = sourceMessage.getVariable("querystring");
+      if (rawQuery instanceof String && canonicalQueryCache != null) {
+        sc.canonicalQueryString = canonicalQueryCache.get((String) rawQuery);
+        if (sc.canonicalQueryString == null) {
+          sc.canonicalQueryString = sc.query.addRaw((String) rawQuery).toString();
+          canonicalQueryCache.put((String) rawQuery, sc.canonicalQueryString);
         }
-
-        // pre-process qparams
-        List<String> qparamList = new ArrayList<String>(sourceMessage.getQueryParamNames());
-        Collections.sort(qparamList);
-        for (String paramName : qparamList) {
-          List<String> unmodifiableList = sourceMessage.getQueryParams(paramName);
-          List<String> paramValues = new ArrayList<String>(unmodifiableList);
-          Collections.sort(paramValues);
-          for (String paramValue : paramValues) {
-            if (!paramValue.equals("")) {
-              encodedQparams.add(
-                  encodeURIComponent(paramName) + "=" + encodeURIComponent(paramValue));
-            } else {
-              encodedQparams.add(encodeURIComponent(paramName));
-            }
+      } else if (rawQuery instanceof String) {
+        sc.query.addRaw((String) rawQuery);
+      } else {
+        for (String paramName : sourceMessage.getQueryParamNames()) {
+          for (String paramValue : sourceMessage.getQueryParams(paramName)) {
+            sc.query.add(paramName, paramValue);
           }
         }
-        setScope();
+      }
+      setScope(sc);
 
-      } else {
-        // get config from individual properties
-        verb = _getOptionalString(msgCtxt, "request-verb");
-        path = _getOptionalString(msgCtxt, "request-path");
-        applyDate(_getOptionalString(msgCtxt, "request-date"));
-        contentSha256 = hex(sha256(""));
-
-        if (path == null) {
-          throw new IllegalStateException("neither source nor verb is specified.");
-        }
-        if (path == null) {
-          throw new IllegalStateException("neither source nor path is specified.");
-        }
+    } else {
+      // get config from individual properties
+      sc.verb = _getOptionalString(msgCtxt, "request-verb");
+      sc.path = _getOptionalString(msgCtxt, "request-path");
+      applyDate(sc, _getOptionalString(msgCtxt, "request-date"));
 
-        expiry = _getRequiredString(msgCtxt, "request-expiry");
-        // TODO: perform time validation and resolution here
+      if (sc.path == null) {
+        throw new IllegalStateException("neither source nor verb is specified.");
+      }
+      if (sc.path == null) {
+        throw new IllegalStateException("neither source nor path is specified.");
+      }
 
-        output = _getRequiredString(msgCtxt, "output");
+      sc.expiry = _getRequiredString(msgCtxt, "request-expiry");
+      // TODO: perform time validation and resolution here
 
-        setScope();
+      sc.output = _getRequiredString(msgCtxt, "output");
 
-        // pre-load qparams here
-        encodedQparams.add("X-Amz-Algorithm=AWS4-HMAC-SHA256");
-        encodedQparams.add("X-Amz-Credential=" + uriEncode(key + "/" + scope, true));
-        encodedQparams.add("X-Amz-Date=" + dateTimeStamp);
-        encodedQparams.add("X-Amz-Expires=" + expiry);
-        encodedQparams.add("X-Amz-SignedHeaders=host");
-      }
+      setScope(sc);
+
+      // this is for constructing a presigned URL for a GET request; only the host is signed
+      sc.headers.put("host", sc.host);
+
+      // pre-load qparams here
+      sc.query.addEncoded("X-Amz-Algorithm", ALGORITHM);
+      sc.query.addEncoded("X-Amz-Credential", uriEncode(sc.key + "/" + sc.scope, true));
+      sc.query.addEncoded("X-Amz-Date", sc.dateTimeStamp);
+      sc.query.addEncoded("X-Amz-Expires", sc.expiry);
+      sc.query.addEncoded("X-Amz-SignedHeaders", "host");
     }
+  }
 
-    public String computeStringToSign(Canonicalized canonicalized) throws Exception {
-      List<String> stringToSignLines = new ArrayList<>();
-      stringToSignLines.add("AWS4-HMAC-SHA256");
-      stringToSignLines.add(dateTimeStamp);
-      stringToSignLines.add(scope);
-      stringToSignLines.add(hex(sha256(canonicalized.request)));
-      stringToSign = stringToSignLines.stream().collect(Collectors.joining("\n"));
-      return stringToSign;
+  /** Writes the string-to-sign into the context's buffer. */
+  private static void computeStringToSign(SigningContext sc) {
+    Utf8Buffer sts = sc.stringToSign.reset();
+    sts.append(ALGORITHM).append('\n');
+    if (sc.stamp != null) {
+      sts.append(sc.stamp.dateTimeBytes).append('\n');
+    } else {
+      sts.append(sc.dateTimeStamp).append('\n');
     }
+    sts.append(sc.scope).append('\n');
+    sts.appendHex(sc.canonicalRequestHash);
+  }
 
-    public byte[] getSigningKey() throws Exception {
-      byte[] kSecret = ("AWS4" + secret).getBytes("UTF-8");
-      byte[] kDate = hmacsha256(dateStamp, kSecret);
-      byte[] kRegion = hmacsha256(region, kDate);
-      byte[] kService = hmacsha256(service, kRegion);
-      byte[] kSigning = hmacsha256("aws4_request", kService);
-      return kSigning;
+  private static void setHeader(
+      SigningContext sc, String headerName, String value, boolean sensitive) {
+    sc.sourceMessage.setHeader(headerName, value);
+    if (sc.debug || !sensitive) {
+      sc.msgCtxt.setVariable(varName("header." + headerName), value);
     }
+  }
 
-    private void setHeader(String headerName, String value, boolean sensitive) {
-      sourceMessage.setHeader(headerName, value);
-      if (debug || !sensitive) {
-        msgCtxt.setVariable(varName("header." + headerName), value);
+  /** Computes the signature over the string-to-sign, into the context's signature array. */
+  private static void sign(SigningContext sc) throws Exception {
+    SigningKeyCache.Entry entry =
+        signingKeyCache.getEntry(sc.secret, sc.dateStamp, sc.region, sc.service);
+    Utf8Buffer sts = sc.stringToSign;
+    if (sc.hmacMidstate) {
+      // start from state that has already absorbed the key and the string-to-sign prefix
+      Mac mac = entry.newStringToSignMac(sc.dateTimeStamp, sc.scope);
+      if (mac != null) {
+        // the hex-encoded canonical request hash is the last line of the string-to-sign
+        mac.update(sts.array(), sts.length() - 64, 64);
+        mac.doFinal(sc.signature, 0);
+        return;
       }
     }
+    Mac mac = sc.crypto.hmac(entry.signingKey);
+    sts.updateMac(mac);
+    mac.doFinal(sc.signature, 0);
+  }
 
-    public void emitOutput(Canonicalized canonicalized) throws Exception {
-      final byte[] signature = hmacsha256(stringToSign, getSigningKey());
-
-      if (sourceMessage != null) {
-        if (wantSignedContentSha256) {
-          setHeader("x-amz-content-sha256", contentSha256, false);
-        }
-
-        setHeader("x-amz-date", dateTimeStamp, false);
-        setHeader("Host", host, false);
-        String credentials = "Credential=" + key + "/" + scope;
-        String signedHeaders = "SignedHeaders=" + canonicalized.signedHeaders;
-        String signatureString = "Signature=" + hex(signature);
+  private static void emitOutput(SigningContext sc) throws Exception {
+    sign(sc);
 
-        String authzHeader =
-            "AWS4-HMAC-SHA256 " + credentials + ", " + signedHeaders + ", " + signatureString;
-        setHeader("Authorization", authzHeader, true);
-      } else {
-        encodedQparams.add("X-Amz-Signature=" + hex(signature));
-
-        String constructedUrl =
-            String.format(
-                "%s%s?%s",
-                endpoint, path, encodedQparams.stream().collect(Collectors.joining("&")));
-        msgCtxt.setVariable(output, constructedUrl);
+    if (sc.sourceMessage != null) {
+      if (sc.wantSignedContentSha256) {
+        setHeader(sc, "x-amz-content-sha256", sc.contentSha256, false);
       }
-    }
 
-    private String normalizePath(String s) {
-      String normalizedPath = Paths.get("/", s).normalize().toString();
-      if (normalizedPath.length() > 1 && s.endsWith("/")) {
-        normalizedPath += "/";
-      } else if (insureTrailingSlashOnPath) {
-        normalizedPath += "/";
-      }
-      return normalizedPath;
+      setHeader(sc, "x-amz-date", sc.dateTimeStamp, false);
+      setHeader(sc, "Host", sc.host, false);
+      StringBuilder authz = sc.text();
+      authz.append(ALGORITHM).append(" Credential=").append(sc.key).append('/').append(sc.scope);
+      authz.append(sc.signedHeaders.authorizationFragment).append(", Signature=");
+      sc.appendHex(authz, sc.signature);
+      setHeader(sc, "Authorization", authz.toString(), true);
+    } else {
+      StringBuilder constructedUrl = sc.text().append(sc.endpoint.origin);
+      constructedUrl.append(sc.path).append('?');
+      sc.query.appendTo(constructedUrl);
+      constructedUrl.append("&X-Amz-Signature=");
+      sc.appendHex(constructedUrl, sc.signature);
+      sc.msgCtxt.setVariable(sc.output, constructedUrl.toString());
     }
+  }
 
-    public Canonicalized getCanonicalRequest() {
-      // (1) https://docs.aws.amazon.com/general/latest/gr/sigv4-create-canonical-request.html
-      List<String> canonicalRequestLines = new ArrayList<>();
-      canonicalRequestLines.add(this.verb);
-      canonicalRequestLines.add(uriEncode(normalizePath(this.path), false));
-      canonicalRequestLines.add(this.encodedQparams.stream().collect(Collectors.joining("&")));
-
-      String signedHeaders = null;
-      if (this.sourceMessage != null) {
-        for (Map.Entry<String, String> entry : this.headers.entrySet()) {
-          canonicalRequestLines.add(entry.getKey() + ":" + entry.getValue());
-        }
-        signedHeaders = this.headers.keySet().stream().collect(Collectors.joining(";"));
-      } else {
-        // this is for constructing a presigned URL for a GET request; there are no headers
-        canonicalRequestLines.add("host:" + this.host);
-        signedHeaders = "host";
-      }
-      canonicalRequestLines.add(null); // new line required after headers
-      canonicalRequestLines.add(signedHeaders);
+  private String canonicalUri(SigningContext sc) {
+    LruCache<String, String> cache =
+        sc.insureTrailingSlashOnPath ? canonicalUriWithSlashCache : canonicalUriCache;
+    if (cache == null) {
+      return uriEncode(PathNormalizer.normalize(sc.path, sc.insureTrailingSlashOnPath), false);
+    }
+    String uri = cache.get(sc.path);
+    if (uri == null) {
+      uri = uriEncode(PathNormalizer.normalize(sc.path, sc.insureTrailingSlashOnPath), false);
+      cache.put(sc.path, uri);
+    }
+    return uri;
+  }
 
-      if (this.sourceMessage != null) {
-        canonicalRequestLines.add(this.contentSha256);
-      } else {
-        canonicalRequestLines.add("UNSIGNED-PAYLOAD");
-      }
-      return new Canonicalized(
-          signedHeaders,
-          canonicalRequestLines.stream()
-              .map(line -> line == null ? "" : line)
-              .collect(Collectors.joining("\n")));
+  /** Writes the canonical request into the context's buffer, and digests it. */
+  void canonicalize(SigningContext sc) throws Exception {
+    // (1) https://docs.aws.amazon.com/general/latest/gr/sigv4-create-canonical-request.html
+    Utf8Buffer creq = sc.canonicalRequest.reset();
+    creq.append(sc.verb).append('\n');
+    creq.append(canonicalUri(sc)).append('\n');
+    if (sc.canonicalQueryString != null) {
+      creq.append(sc.canonicalQueryString);
+    } else {
+      sc.query.appendTo(creq);
+    }
+    creq.append('\n');
+
+    sc.headers.appendTo(creq);
+    sc.signedHeaders = signedHeadersCache.get(sc.headers);
+    creq.append('\n'); // new line required after headers
+    creq.append(sc.signedHeaders.bytes).append('\n');
+    if (sc.sourceMessage != null) {
+      creq.appendHex(sc.payloadHash);
+    } else {
+      creq.append("UNSIGNED-PAYLOAD");
     }
+
+    MessageDigest digest = sc.crypto.sha256();
+    creq.updateDigest(digest);
+    digest.digest(sc.canonicalRequestHash, 0, sc.canonicalRequestHash.length);
   }
 
   public ExecutionResult execute(MessageContext msgCtxt, ExecutionContext exeCtxt) {
     boolean debug = false;
+    SigningContext sc = null;
     try {
       clearVariables(msgCtxt);
       debug = getDebug(msgCtxt);
-      SignConfiguration signConfig = new SignConfiguration(msgCtxt, debug);
-      final Canonicalized canonicalized = signConfig.getCanonicalRequest();
-      msgCtxt.setVariable(varName("creq"), canonicalized.request.replaceAll("\n", "↵"));
-
-      final String stringToSign = signConfig.computeStringToSign(canonicalized);
-      msgCtxt.setVariable(varName("sts"), stringToSign.replaceAll("\n", "↵"));
+      sc = SigningContext.acquire();
+      configure(sc, msgCtxt, debug);
+      canonicalize(sc);
+      computeStringToSign(sc);
+      if (debug) {
+        msgCtxt.setVariable(varName("creq"), sc.canonicalRequest.toString().replace('\n', '↵'));
+        msgCtxt.setVariable(varName("sts"), sc.stringToSign.toString().replace('\n', '↵'));
+      }
 
-      signConfig.emitOutput(canonicalized);
+      emitOutput(sc);
+      if (debug) {
+        msgCtxt.setVariable(
+            varName("signing_key_cache_hits"), String.valueOf(signingKeyCache.getHits()));
+        msgCtxt.setVariable(
+            varName("signing_key_cache_misses"), String.valueOf(signingKeyCache.getMisses()));
+        if (canonicalQueryCache != null) {
+          msgCtxt.setVariable(
+              varName("canonical_uri_cache_hits"),
+              String.valueOf(canonicalUriCache.getHits() + canonicalUriWithSlashCache.getHits()));
+          msgCtxt.setVariable(
+              varName("canonical_uri_cache_misses"),
+              String.valueOf(
+                  canonicalUriCache.getMisses() + canonicalUriWithSlashCache.getMisses()));
+          msgCtxt.setVariable(
+              varName("canonical_query_cache_hits"), String.valueOf(canonicalQueryCache.getHits()));
+          msgCtxt.setVariable(
+              varName("canonical_query_cache_misses"),
+              String.valueOf(canonicalQueryCache.getMisses()));
+        }
+      }
 
     } catch (Exception e) {
       if (debug) {
@@ -442,6 +590,10 @@ public class AWSV4Signature extends SignatureCalloutBase implements Execution {
       }
       setExceptionVariables(e, msgCtxt);
       return ExecutionResult.ABORT;
+    } finally {
+      if (sc != null) {
+        sc.release();
+      }
     }
     return ExecutionResult.SUCCESS;
   }
@@ -0,0 +1,126 @@
+// AmzDateClock.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.time.Clock;
+
+/**
+ * Supplies the current time as x-amz-date stamps. The formatted values are computed at most once
+ * per second and published through a volatile field, so all the requests within the same second
+ * share them. The underlying Clock can be replaced, for example with a fixed clock in tests.
+ */
+final class AmzDateClock {
+  static final AmzDateClock SYSTEM = new AmzDateClock(Clock.systemUTC());
+
+  private final Clock clock;
+  private volatile Stamp current;
+
+  AmzDateClock(Clock clock) {
+    this.clock = clock;
+  }
+
+  /** The formatted forms of one UTC second. */
+  static final class Stamp {
+    final long epochSecond;
+    /** yyyyMMdd'T'HHmmss'Z' */
+    final String dateTimeStamp;
+    /** yyyyMMdd */
+    final String dateStamp;
+    /** The ASCII bytes of dateTimeStamp. */
+    final byte[] dateTimeBytes;
+
+    private volatile Scope scope;
+
+    Stamp(long epochSecond) {
+      this.epochSecond = epochSecond;
+      this.dateTimeBytes = format(epochSecond);
+      char[] chars = new char[dateTimeBytes.length];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = (char) dateTimeBytes[i];
+      }
+      this.dateTimeStamp = new String(chars);
+      this.dateStamp = dateTimeStamp.substring(0, 8);
+    }
+
+    /** Returns dateStamp + suffix, remembering the most recent result. */
+    String scope(String suffix) {
+      Scope s = scope;
+      if (s != null && s.suffix.equals(suffix)) {
+        return s.value;
+      }
+      s = new Scope(suffix, dateStamp + suffix);
+      scope = s;
+      return s.value;
+    }
+  }
+
+  private static final class Scope {
+    final String suffix;
+    final String value;
+
+    Scope(String suffix, String value) {
+      this.suffix = suffix;
+      this.value = value;
+    }
+  }
+
+  Stamp now() {
+    long second = Math.floorDiv(clock.millis(), 1000L);
+    Stamp s = current;
+    if (s == null || s.epochSecond != second) {
+      // racing threads may each format the same second; any of the results is fine
+      s = new Stamp(second);
+      current = s;
+    }
+    return s;
+  }
+
+  /** Formats the second as yyyyMMdd'T'HHmmss'Z', in ASCII. */
+  static byte[] format(long epochSecond) {
+    long days = Math.floorDiv(epochSecond, 86400L);
+    int secondOfDay = (int) Math.floorMod(epochSecond, 86400L);
+
+    // convert days since the epoch to a civil date, after Howard Hinnant's civil_from_days
+    long z = days + 719468;
+    long era = Math.floorDiv(z, 146097L);
+    int dayOfEra = (int) (z - era * 146097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int mp = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+    int month = (mp < 10) ? mp + 3 : mp - 9;
+    long year = yearOfEra + era * 400 + ((month <= 2) ? 1 : 0);
+
+    byte[] b = new byte[16];
+    put2(b, 0, (int) (year / 100));
+    put2(b, 2, (int) (year % 100));
+    put2(b, 4, month);
+    put2(b, 6, day);
+    b[8] = 'T';
+    put2(b, 9, secondOfDay / 3600);
+    put2(b, 11, (secondOfDay / 60) % 60);
+    put2(b, 13, secondOfDay % 60);
+    b[15] = 'Z';
+    return b;
+  }
+
+  private static void put2(byte[] b, int offset, int value) {
+    b[offset] = (byte) ('0' + value / 10);
+    b[offset + 1] = (byte) ('0' + value % 10);
+  }
+}
@@ -0,0 +1,222 @@
+// CanonicalQuery.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds the canonical query string. Each name and value is encoded exactly once, and the pairs are
+ * sorted by encoded name and then by encoded value, as SigV4 requires. The pairs are held in
+ * parallel arrays and sorted through an index array, so an instance can be reset and reused.
+ */
+final class CanonicalQuery {
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private String[] names = new String[16];
+  private String[] values = new String[16];
+  private int[] order = new int[16];
+  private int[] scratch = new int[16];
+  private int count;
+  private boolean sorted = true;
+
+  CanonicalQuery reset() {
+    Arrays.fill(names, 0, count, null);
+    Arrays.fill(values, 0, count, null);
+    count = 0;
+    sorted = true;
+    return this;
+  }
+
+  int size() {
+    return count;
+  }
+
+  /** Adds a decoded name and value; an empty value produces a parameter with no '='. */
+  CanonicalQuery add(String name, String value) {
+    return addEncoded(
+        AWSV4Signature.encodeURIComponent(name),
+        (value == null || value.equals("")) ? "" : AWSV4Signature.encodeURIComponent(value));
+  }
+
+  /** Adds a name and value that are already encoded. */
+  CanonicalQuery addEncoded(String encodedName, String encodedValue) {
+    if (count == names.length) {
+      int capacity = count * 2;
+      names = Arrays.copyOf(names, capacity);
+      values = Arrays.copyOf(values, capacity);
+      order = new int[capacity];
+      scratch = new int[capacity];
+    }
+    names[count] = encodedName;
+    values[count] = encodedValue;
+    count++;
+    sorted = false;
+    return this;
+  }
+
+  /**
+   * Parses a raw query string, as it appears in the URL, and adds each parameter. Percent escapes
+   * and '+' are decoded before the name and value are encoded in canonical form.
+   */
+  CanonicalQuery addRaw(String rawQuery) {
+    int n = rawQuery.length();
+    int i = 0;
+    while (i < n) {
+      int end = rawQuery.indexOf('&', i);
+      if (end < 0) end = n;
+      if (end > i) {
+        int eq = rawQuery.indexOf('=', i);
+        if (eq < 0 || eq > end) {
+          add(decode(rawQuery, i, end), "");
+        } else {
+          add(decode(rawQuery, i, eq), decode(rawQuery, eq + 1, end));
+        }
+      }
+      i = end + 1;
+    }
+    return this;
+  }
+
+  /** Decodes percent escapes, as UTF-8, and '+' as a space. Malformed escapes are kept as-is. */
+  static String decode(String s, int start, int end) {
+    int i = start;
+    while (i < end && s.charAt(i) != '%' && s.charAt(i) != '+') {
+      i++;
+    }
+    if (i == end) {
+      return s.substring(start, end);
+    }
+    StringBuilder sb = new StringBuilder(end - start);
+    sb.append(s, start, i);
+    byte[] bytes = null;
+    while (i < end) {
+      char c = s.charAt(i);
+      if (c == '+') {
+        sb.append(' ');
+        i++;
+      } else if (c == '%' && hexValue(s, i, end) >= 0) {
+        // a run of escapes is decoded together, so multi-byte sequences survive
+        if (bytes == null) bytes = new byte[(end - i) / 3];
+        int length = 0;
+        int b;
+        while (i < end && s.charAt(i) == '%' && (b = hexValue(s, i, end)) >= 0) {
+          bytes[length++] = (byte) b;
+          i += 3;
+        }
+        sb.append(new String(bytes, 0, length, StandardCharsets.UTF_8));
+      } else {
+        sb.append(c);
+        i++;
+      }
+    }
+    return sb.toString();
+  }
+
+  private static int hexValue(String s, int percent, int end) {
+    if (percent + 2 >= end) {
+      return -1;
+    }
+    int hi = hexDigit(s.charAt(percent + 1));
+    int lo = hexDigit(s.charAt(percent + 2));
+    return (hi < 0 || lo < 0) ? -1 : (hi << 4) | lo;
+  }
+
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') return c - '0';
+    if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+    if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+    return -1;
+  }
+
+  private void sort() {
+    if (sorted) return;
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    mergeSort(0, count);
+    sorted = true;
+  }
+
+  private int compare(int a, int b) {
+    int cmp = names[a].compareTo(names[b]);
+    return (cmp != 0) ? cmp : values[a].compareTo(values[b]);
+  }
+
+  private void mergeSort(int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        int x = order[i];
+        int j = i - 1;
+        while (j >= from && compare(order[j], x) > 0) {
+          order[j + 1] = order[j];
+          j--;
+        }
+        order[j + 1] = x;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(from, mid);
+    mergeSort(mid, to);
+    if (compare(order[mid - 1], order[mid]) <= 0) {
+      return;
+    }
+    System.arraycopy(order, from, scratch, from, to - from);
+    int i = from;
+    int j = mid;
+    for (int k = from; k < to; k++) {
+      if (j >= to || (i < mid && compare(scratch[i], scratch[j]) <= 0)) {
+        order[k] = scratch[i++];
+      } else {
+        order[k] = scratch[j++];
+      }
+    }
+  }
+
+  void appendTo(Utf8Buffer buffer) {
+    sort();
+    for (int k = 0; k < count; k++) {
+      int i = order[k];
+      if (k > 0) buffer.append('&');
+      buffer.append(names[i]);
+      if (!values[i].equals("")) {
+        buffer.append('=').append(values[i]);
+      }
+    }
+  }
+
+  void appendTo(StringBuilder sb) {
+    sort();
+    for (int k = 0; k < count; k++) {
+      int i = order[k];
+      if (k > 0) sb.append('&');
+      sb.append(names[i]);
+      if (!values[i].equals("")) {
+        sb.append('=').append(values[i]);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    appendTo(sb);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,121 @@
+// CryptoContext.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per-thread holder for the SHA-256 digest and HmacSHA256 instances used while signing.
+ *
+ * <p>Looking up a provider through {@code getInstance} is comparatively expensive and contends on
+ * the JCA service tables, so each thread obtains its instances once and reuses them. Neither
+ * {@code MessageDigest} nor {@code Mac} is thread safe; the instances must never escape the thread
+ * that owns them. Every operation leaves the instances in their initial state, and operations
+ * reset them first in case a previous caller failed partway through.
+ */
+final class CryptoContext {
+  static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final ThreadLocal<CryptoContext> current =
+      ThreadLocal.withInitial(CryptoContext::create);
+
+  private final MessageDigest sha256;
+  private final Mac hmac;
+  private byte[] hmacKey;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  private CryptoContext(MessageDigest sha256, Mac hmac) {
+    this.sha256 = sha256;
+    this.hmac = hmac;
+  }
+
+  private static CryptoContext create() {
+    try {
+      return new CryptoContext(
+          MessageDigest.getInstance("SHA-256"), Mac.getInstance(HMAC_ALGORITHM));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("SHA-256 or HmacSHA256 is not available", e);
+    }
+  }
+
+  static CryptoContext get() {
+    return current.get();
+  }
+
+  /** Returns the digest, reset and ready for updates. */
+  MessageDigest sha256() {
+    sha256.reset();
+    return sha256;
+  }
+
+  byte[] sha256(byte[] data) {
+    sha256.reset();
+    return sha256.digest(data);
+  }
+
+  /**
+   * Digests the stream incrementally through a fixed-size buffer, so memory use does not depend on
+   * the length of the content. The stream is read to its end but not closed.
+   */
+  byte[] sha256(InputStream in) throws IOException {
+    digestStream(in);
+    return sha256.digest();
+  }
+
+  /** As {@link #sha256(InputStream)}, but writes the 32-byte digest into the given array. */
+  void sha256(InputStream in, byte[] out) throws IOException, GeneralSecurityException {
+    digestStream(in);
+    sha256.digest(out, 0, out.length);
+  }
+
+  private void digestStream(InputStream in) throws IOException {
+    sha256.reset();
+    if (in != null) {
+      int n;
+      while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+        sha256.update(buffer, 0, n);
+      }
+    }
+  }
+
+  /**
+   * Returns the Mac, initialized with the given key and ready for updates. The Mac is initialized
+   * again only when the key differs from the key used last on this thread.
+   */
+  Mac hmac(byte[] key) throws GeneralSecurityException {
+    if (hmacKey != null && Arrays.equals(hmacKey, key)) {
+      hmac.reset();
+    } else {
+      hmacKey = null;
+      hmac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+      hmacKey = key.clone();
+    }
+    return hmac;
+  }
+
+  byte[] hmacsha256(byte[] data, byte[] key) throws GeneralSecurityException {
+    return hmac(key).doFinal(data);
+  }
+}
@@ -0,0 +1,159 @@
+// Endpoint.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed endpoint URL: the scheme, the value for the Host header, and the optional base path.
+ *
+ * <p>The scheme must be https, or http for local stand-ins. The host may be a name, an IPv4 address
+ * or a bracketed IPv6 literal, optionally followed by a port; the Host value omits the port when it
+ * is the default for the scheme. User info, a query or a fragment is rejected.
+ *
+ * <p>Parsed endpoints are cached by their string form, so a dynamic endpoint such as
+ * {@code https://{bucket}.s3.amazonaws.com} is parsed once per distinct value. The cache is
+ * bounded; once it is full, further endpoints are parsed on each use but not stored.
+ */
+final class Endpoint {
+  static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  private static final ConcurrentHashMap<String, Endpoint> cache =
+      new ConcurrentHashMap<String, Endpoint>();
+
+  /** "https" or "http". */
+  final String scheme;
+  /** The value for the Host header, with the port when it is not the default. */
+  final String host;
+  /** The path that follows the authority, or null when there is none. */
+  final String path;
+  /** The scheme and authority, without the path; for example "https://example.com:8443". */
+  final String origin;
+
+  private Endpoint(String scheme, String host, String path) {
+    this.scheme = scheme;
+    this.host = host;
+    this.path = path;
+    this.origin = scheme + "://" + host;
+  }
+
+  /** Returns the parsed endpoint, from the cache when possible. */
+  static Endpoint of(String endpoint) {
+    Endpoint parsed = cache.get(endpoint);
+    if (parsed == null) {
+      parsed = parse(endpoint);
+      if (cache.size() < DEFAULT_MAX_ENTRIES) {
+        cache.putIfAbsent(endpoint, parsed);
+      }
+    }
+    return parsed;
+  }
+
+  static int cacheSize() {
+    return cache.size();
+  }
+
+  static Endpoint parse(String endpoint) {
+    String scheme;
+    int authorityStart;
+    if (endpoint.regionMatches(true, 0, "https://", 0, 8)) {
+      scheme = "https";
+      authorityStart = 8;
+    } else if (endpoint.regionMatches(true, 0, "http://", 0, 7)) {
+      scheme = "http";
+      authorityStart = 7;
+    } else {
+      throw invalid(endpoint);
+    }
+
+    int n = endpoint.length();
+    int authorityEnd = authorityStart;
+    while (authorityEnd < n && "/?#".indexOf(endpoint.charAt(authorityEnd)) < 0) {
+      authorityEnd++;
+    }
+    int pathEnd = authorityEnd;
+    while (pathEnd < n && "?#".indexOf(endpoint.charAt(pathEnd)) < 0) {
+      pathEnd++;
+    }
+    if (pathEnd < n) {
+      throw new IllegalStateException(
+          String.format("endpoint must not include a query or fragment: %s", endpoint));
+    }
+
+    String authority = endpoint.substring(authorityStart, authorityEnd);
+    if (authority.indexOf('@') >= 0) {
+      throw invalid(endpoint);
+    }
+    String hostname;
+    String port = null;
+    if (authority.startsWith("[")) {
+      int close = authority.indexOf(']');
+      if (close < 0) {
+        throw invalid(endpoint);
+      }
+      hostname = authority.substring(0, close + 1);
+      if (close + 1 < authority.length()) {
+        if (authority.charAt(close + 1) != ':') {
+          throw invalid(endpoint);
+        }
+        port = authority.substring(close + 2);
+      }
+    } else {
+      int colon = authority.indexOf(':');
+      hostname = (colon < 0) ? authority : authority.substring(0, colon);
+      port = (colon < 0) ? null : authority.substring(colon + 1);
+    }
+    if (hostname.equals("") || hostname.equals("[]")) {
+      throw invalid(endpoint);
+    }
+
+    String host = hostname;
+    if (port != null) {
+      int portNumber = parsePort(port, endpoint);
+      int defaultPort = scheme.equals("https") ? 443 : 80;
+      if (portNumber != defaultPort) {
+        host = hostname + ":" + portNumber;
+      }
+    }
+    String path = (authorityEnd < n) ? endpoint.substring(authorityEnd) : null;
+    return new Endpoint(scheme, host, path);
+  }
+
+  private static int parsePort(String port, String endpoint) {
+    if (port.equals("") || port.length() > 5) {
+      throw invalid(endpoint);
+    }
+    int value = 0;
+    for (int i = 0; i < port.length(); i++) {
+      char c = port.charAt(i);
+      if (c < '0' || c > '9') {
+        throw invalid(endpoint);
+      }
+      value = value * 10 + (c - '0');
+    }
+    if (value < 1 || value > 65535) {
+      throw invalid(endpoint);
+    }
+    return value;
+  }
+
+  private static IllegalStateException invalid(String endpoint) {
+    return new IllegalStateException(
+        String.format("endpoint must be an http or https URL with a host: %s", endpoint));
+  }
+}
@@ -0,0 +1,105 @@
+// HeaderFilter.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides which headers of the source message get signed, from the signed-headers and
+ * unsigned-headers properties. Each is a list of header names separated by commas or spaces; an
+ * entry that ends in '*' is a prefix. Matching ignores case. The host header and the x-amz-*
+ * headers are always signed, as AWS requires.
+ */
+final class HeaderFilter {
+  /** Signs every header; this is the behavior when neither property is set. */
+  static final HeaderFilter ALL = new HeaderFilter(null, null);
+
+  private final Matcher signed; // null means every header
+  private final Matcher unsigned; // null means none
+
+  private HeaderFilter(Matcher signed, Matcher unsigned) {
+    this.signed = signed;
+    this.unsigned = unsigned;
+  }
+
+  static HeaderFilter compile(String signedHeaders, String unsignedHeaders) {
+    Matcher signed = Matcher.parse(signedHeaders);
+    Matcher unsigned = Matcher.parse(unsignedHeaders);
+    return (signed == null && unsigned == null) ? ALL : new HeaderFilter(signed, unsigned);
+  }
+
+  /** Returns true if the header, given by its lowercase name, should be signed. */
+  boolean isSigned(String name) {
+    if (name.equals("host") || name.startsWith("x-amz-")) {
+      return true;
+    }
+    if (signed != null && !signed.matches(name)) {
+      return false;
+    }
+    return unsigned == null || !unsigned.matches(name);
+  }
+
+  private static final class Matcher {
+    private final String[] names;
+    private final String[] prefixes;
+
+    private Matcher(List<String> names, List<String> prefixes) {
+      this.names = names.toArray(new String[0]);
+      this.prefixes = prefixes.toArray(new String[0]);
+    }
+
+    static Matcher parse(String spec) {
+      if (spec == null) {
+        return null;
+      }
+      List<String> names = new ArrayList<String>();
+      List<String> prefixes = new ArrayList<String>();
+      int length = spec.length();
+      int i = 0;
+      while (i < length) {
+        while (i < length && isSeparator(spec.charAt(i))) i++;
+        int start = i;
+        while (i < length && !isSeparator(spec.charAt(i))) i++;
+        if (i == start) continue;
+        String item = spec.substring(start, i).toLowerCase(Locale.ROOT);
+        if (item.endsWith("*")) {
+          prefixes.add(item.substring(0, item.length() - 1));
+        } else {
+          names.add(item);
+        }
+      }
+      return (names.isEmpty() && prefixes.isEmpty()) ? null : new Matcher(names, prefixes);
+    }
+
+    private static boolean isSeparator(char c) {
+      return c == ',' || c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    boolean matches(String name) {
+      for (String n : names) {
+        if (n.equals(name)) return true;
+      }
+      for (String p : prefixes) {
+        if (name.startsWith(p)) return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+// HeaderNormalizer.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.util.Locale;
+
+/**
+ * Normalizes header names and values for the canonical request. Both methods return their input,
+ * or a shared constant, whenever that is already the normalized form, so the common case does not
+ * allocate.
+ */
+final class HeaderNormalizer {
+  private static final String[] WELL_KNOWN = {
+    "accept",
+    "authorization",
+    "content-encoding",
+    "content-length",
+    "content-md5",
+    "content-type",
+    "date",
+    "host",
+    "range",
+    "user-agent",
+    "x-amz-acl",
+    "x-amz-content-sha256",
+    "x-amz-copy-source",
+    "x-amz-date",
+    "x-amz-security-token",
+    "x-amz-storage-class",
+    "x-amz-target",
+    "x-amz-user-agent"
+  };
+
+  // the well-known names, bucketed by length
+  private static final String[][] BY_LENGTH;
+
+  static {
+    int max = 0;
+    for (String name : WELL_KNOWN) {
+      max = Math.max(max, name.length());
+    }
+    int[] counts = new int[max + 1];
+    for (String name : WELL_KNOWN) {
+      counts[name.length()]++;
+    }
+    BY_LENGTH = new String[max + 1][];
+    for (int i = 0; i <= max; i++) {
+      BY_LENGTH[i] = new String[counts[i]];
+      counts[i] = 0;
+    }
+    for (String name : WELL_KNOWN) {
+      BY_LENGTH[name.length()][counts[name.length()]++] = name.intern();
+    }
+  }
+
+  private HeaderNormalizer() {}
+
+  /**
+   * Returns the name in lowercase. Well-known names map to shared constants; other names that are
+   * already lowercase ASCII are returned as-is.
+   */
+  static String lowerCaseName(String name) {
+    int n = name.length();
+    if (n < BY_LENGTH.length) {
+      for (String known : BY_LENGTH[n]) {
+        if (known.regionMatches(true, 0, name, 0, n)) {
+          return known;
+        }
+      }
+    }
+    int i = 0;
+    char c;
+    while (i < n && (c = name.charAt(i)) < 0x80 && !(c >= 'A' && c <= 'Z')) {
+      i++;
+    }
+    if (i == n) {
+      return name;
+    }
+    char[] chars = name.toCharArray();
+    for (; i < n; i++) {
+      c = chars[i];
+      if (c >= 'A' && c <= 'Z') {
+        chars[i] = (char) (c + ('a' - 'A'));
+      } else if (c >= 0x80) {
+        // not a valid header token; leave it to the JRE
+        return name.toLowerCase(Locale.ROOT);
+      }
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Trims the value, as String.trim does, and collapses each run of spaces inside it into one
+   * space. Returns the value itself when nothing changes.
+   */
+  static String normalizeValue(String value) {
+    int start = 0;
+    int end = value.length();
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int i = value.indexOf("  ", start);
+    if (i < 0 || i >= end - 1) {
+      return (start == 0 && end == value.length()) ? value : value.substring(start, end);
+    }
+    StringBuilder sb = new StringBuilder(end - start);
+    sb.append(value, start, i + 1);
+    boolean previousSpace = true;
+    for (i = i + 1; i < end; i++) {
+      char c = value.charAt(i);
+      if (c != ' ' || !previousSpace) {
+        sb.append(c);
+      }
+      previousSpace = (c == ' ');
+    }
+    return sb.toString();
+  }
+}
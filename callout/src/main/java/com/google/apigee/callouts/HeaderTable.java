@@ -0,0 +1,158 @@
+// HeaderTable.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.util.Arrays;
+
+/**
+ * The headers to sign, kept sorted by name in parallel arrays. Each put is an insertion into the
+ * sorted position, replacing the value when the name is already present. A request has few enough
+ * headers that this is cheaper than a tree, and an instance can be reset and reused.
+ */
+final class HeaderTable {
+  private String[] names = new String[16];
+  private String[] values = new String[16];
+  private int count;
+
+  HeaderTable reset() {
+    Arrays.fill(names, 0, count, null);
+    Arrays.fill(values, 0, count, null);
+    count = 0;
+    return this;
+  }
+
+  int size() {
+    return count;
+  }
+
+  String name(int i) {
+    return names[i];
+  }
+
+  String value(int i) {
+    return values[i];
+  }
+
+  /** Returns the value for a (lowercase) header name, or null. */
+  String get(String name) {
+    int i = indexOf(name);
+    return (i >= 0) ? values[i] : null;
+  }
+
+  boolean containsKey(String name) {
+    return indexOf(name) >= 0;
+  }
+
+  /** Adds the header, or replaces its value if it is already present. */
+  void put(String name, String value) {
+    int i = indexOf(name);
+    if (i >= 0) {
+      values[i] = value;
+    } else {
+      insert(-(i + 1), name, value);
+    }
+  }
+
+  /** Adds the header only if it is not already present. Returns true if it was added. */
+  boolean putIfAbsent(String name, String value) {
+    int i = indexOf(name);
+    if (i >= 0) {
+      return false;
+    }
+    insert(-(i + 1), name, value);
+    return true;
+  }
+
+  /**
+   * Returns the index of the name, or (-(insertion point) - 1) when absent. Names usually arrive in
+   * sorted order, so the last entry is checked before searching.
+   */
+  private int indexOf(String name) {
+    if (count == 0) {
+      return -1;
+    }
+    int cmp = names[count - 1].compareTo(name);
+    if (cmp < 0) {
+      return -(count + 1);
+    }
+    if (cmp == 0) {
+      return count - 1;
+    }
+    int low = 0;
+    int high = count - 2;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      cmp = names[mid].compareTo(name);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void insert(int position, String name, String value) {
+    if (count == names.length) {
+      names = Arrays.copyOf(names, count * 2);
+      values = Arrays.copyOf(values, count * 2);
+    }
+    if (position < count) {
+      System.arraycopy(names, position, names, position + 1, count - position);
+      System.arraycopy(values, position, values, position + 1, count - position);
+    }
+    names[position] = name;
+    values[position] = value;
+    count++;
+  }
+
+  /** Writes the canonical header lines, "name:value\n" for each header, into the buffer. */
+  void appendTo(Utf8Buffer canonicalHeaders) {
+    for (int i = 0; i < count; i++) {
+      canonicalHeaders.append(names[i]).append(':').append(values[i]).append('\n');
+    }
+  }
+
+  /** Returns a hash of the sequence of names, without the values. */
+  int namesHash() {
+    int h = 1;
+    for (int i = 0; i < count; i++) {
+      h = 31 * h + names[i].hashCode();
+    }
+    return h;
+  }
+
+  /** Returns true if the table holds exactly these names, in this order. */
+  boolean hasNames(String[] other) {
+    if (other.length != count) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (!names[i].equals(other[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  String[] names() {
+    return Arrays.copyOf(names, count);
+  }
+}
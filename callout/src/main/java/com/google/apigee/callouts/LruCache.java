@@ -0,0 +1,112 @@
+// LruCache.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, least-recently-used map with hit and miss counters, shared by the threads that run the
+ * same policy.
+ *
+ * <p>A hit in an access-ordered map moves the entry, so even reads must hold a lock. Rather than
+ * one lock for the whole cache, the keys are spread by hash over up to 16 segments, each an
+ * access-ordered map with its own lock and its share of the capacity. Threads contend only when
+ * they touch the same segment, at the cost of eviction being least-recently-used within a segment
+ * rather than across the whole cache. The counters are LongAdders, so that counting a hit does not
+ * reintroduce a shared point of contention.
+ */
+final class LruCache<K, V> {
+  private static final int MAX_SEGMENTS = 16;
+
+  private final Segment<K, V>[] segments;
+  private final int segmentMask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  @SuppressWarnings("unchecked")
+  LruCache(final int maxEntries) {
+    // a power of two no larger than maxEntries, so that every segment holds at least one entry
+    int count = Math.max(1, Integer.highestOneBit(Math.min(maxEntries, MAX_SEGMENTS)));
+    segments = (Segment<K, V>[]) new Segment[count];
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment<K, V>(maxEntries / count + (i < maxEntries % count ? 1 : 0));
+    }
+    segmentMask = count - 1;
+  }
+
+  private Segment<K, V> segmentFor(Object key) {
+    int h = key.hashCode();
+    return segments[(h ^ (h >>> 16)) & segmentMask];
+  }
+
+  V get(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    V value;
+    synchronized (segment) {
+      value = segment.get(key);
+    }
+    if (value != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return value;
+  }
+
+  void put(K key, V value) {
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, value);
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  long getMisses() {
+    return misses.sum();
+  }
+
+  private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+    private final int maxEntries;
+
+    Segment(int maxEntries) {
+      super(16, 0.75f, true);
+      this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > maxEntries;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+// PathNormalizer.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+/**
+ * Normalizes the path for a canonical request: collapses repeated slashes, and removes "." and ".."
+ * segments (RFC 3986, section 5.2.4) without ever climbing above the root. The result always begins
+ * with a slash. A trailing slash on the input is kept, unless the path normalizes to the root.
+ */
+final class PathNormalizer {
+  private PathNormalizer() {}
+
+  static String normalize(String path, boolean insureTrailingSlash) {
+    boolean trailingSlash = path.endsWith("/");
+    if (isNormalized(path)) {
+      if (trailingSlash && path.length() > 1) {
+        return path;
+      }
+      return insureTrailingSlash ? path + "/" : path;
+    }
+
+    StringBuilder sb = new StringBuilder(path.length() + 1);
+    int n = path.length();
+    int i = 0;
+    while (i < n) {
+      int end = path.indexOf('/', i);
+      if (end < 0) end = n;
+      int len = end - i;
+      if (len == 0 || (len == 1 && path.charAt(i) == '.')) {
+        // empty or "." segment
+      } else if (len == 2 && path.charAt(i) == '.' && path.charAt(i + 1) == '.') {
+        int lastSlash = sb.lastIndexOf("/");
+        if (lastSlash >= 0) {
+          sb.setLength(lastSlash);
+        }
+      } else {
+        sb.append('/').append(path, i, end);
+      }
+      i = end + 1;
+    }
+    if (sb.length() == 0) {
+      sb.append('/');
+    }
+    if ((sb.length() > 1 && trailingSlash) || insureTrailingSlash) {
+      sb.append('/');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns true if the path begins with a slash and has no empty, "." or ".." segments, apart from
+   * the empty segment that follows a trailing slash.
+   */
+  static boolean isNormalized(String path) {
+    int n = path.length();
+    if (n == 0 || path.charAt(0) != '/') {
+      return false;
+    }
+    int i = 1;
+    while (i < n) {
+      int end = path.indexOf('/', i);
+      if (end < 0) end = n;
+      int len = end - i;
+      if (len == 0
+          || (len == 1 && path.charAt(i) == '.')
+          || (len == 2 && path.charAt(i) == '.' && path.charAt(i + 1) == '.')) {
+        return false;
+      }
+      i = end + 1;
+    }
+    return true;
+  }
+}
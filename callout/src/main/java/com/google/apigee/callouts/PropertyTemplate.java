@@ -0,0 +1,123 @@
+// PropertyTemplate.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.message.MessageContext;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A policy property value, parsed once into literal segments and variable references.
+ *
+ * <p>A variable reference looks like {@code {variable.name}} or {@code {variable.name:default}}. The
+ * name must not begin with a colon, and must not contain braces or spaces. Braces that do not form
+ * a reference are kept as literal text. Resolving a template that has no references returns the
+ * literal without any work.
+ */
+final class PropertyTemplate {
+  private final String literal; // non-null when there are no references
+  private final String[] segments; // segments[i] precedes refs[i]; the last one is the tail
+  private final String[] names;
+  private final String[] defaults;
+  private final int literalLength;
+
+  private PropertyTemplate(List<String> segments, List<String> names, List<String> defaults) {
+    this.segments = segments.toArray(new String[0]);
+    this.names = names.toArray(new String[0]);
+    this.defaults = defaults.toArray(new String[0]);
+    int len = 0;
+    for (String s : this.segments) {
+      len += s.length();
+    }
+    this.literalLength = len;
+    this.literal = (this.names.length == 0) ? this.segments[0] : null;
+  }
+
+  /** Returns null when the spec is null or blank, in which case the property is considered unset. */
+  static PropertyTemplate compile(String spec) {
+    if (spec == null) return null;
+    spec = spec.trim();
+    if (spec.equals("")) return null;
+
+    List<String> segments = new ArrayList<String>();
+    List<String> names = new ArrayList<String>();
+    List<String> defaults = new ArrayList<String>();
+    int n = spec.length();
+    int segmentStart = 0;
+    int i = 0;
+    int open;
+    while ((open = spec.indexOf('{', i)) >= 0) {
+      int start = open + 1;
+      if (start < n && isNameStart(spec.charAt(start))) {
+        int end = start + 1;
+        while (end < n && isNamePart(spec.charAt(end))) {
+          end++;
+        }
+        if (end < n && spec.charAt(end) == '}') {
+          segments.add(spec.substring(segmentStart, open));
+          String ref = spec.substring(start, end);
+          int colon = ref.indexOf(':');
+          names.add(colon < 0 ? ref : ref.substring(0, colon));
+          defaults.add(colon < 0 ? null : ref.substring(colon + 1));
+          segmentStart = i = end + 1;
+          continue;
+        }
+      }
+      i = start;
+    }
+    segments.add(spec.substring(segmentStart));
+    return new PropertyTemplate(segments, names, defaults);
+  }
+
+  private static boolean isNameStart(char c) {
+    return c != '{' && c != '}' && c != ' ' && c != ':';
+  }
+
+  private static boolean isNamePart(char c) {
+    return c != '{' && c != '}' && c != ' ';
+  }
+
+  boolean isLiteral() {
+    return literal != null;
+  }
+
+  String resolve(MessageContext msgCtxt) {
+    if (literal != null) {
+      return literal;
+    }
+    if (names.length == 1 && literalLength == 0) {
+      String value = lookup(msgCtxt, 0);
+      return (value == null) ? "" : value;
+    }
+    StringBuilder sb = new StringBuilder(literalLength + 32 * names.length);
+    for (int i = 0; i < names.length; i++) {
+      sb.append(segments[i]);
+      String value = lookup(msgCtxt, i);
+      if (value != null) {
+        sb.append(value);
+      }
+    }
+    sb.append(segments[names.length]);
+    return sb.toString();
+  }
+
+  private String lookup(MessageContext msgCtxt, int i) {
+    Object v = msgCtxt.getVariable(names[i]);
+    return (v != null) ? (String) v : defaults[i];
+  }
+}
@@ -27,16 +27,37 @@ import java.util.regex.Pattern;
 
 public abstract class SignatureCalloutBase {
   private static final String _varprefix = "awsv4sig_";
-  private static final String variableReferencePatternString =
-      "(.*?)\\{([^\\{\\} :][^\\{\\} ]*?)\\}(.*?)";
-  private static final Pattern variableReferencePattern =
-      Pattern.compile(variableReferencePatternString);
   private static final String commonError = "^(.+?)[:;] (.+)$";
   private static final Pattern commonErrorPattern = Pattern.compile(commonError);
   protected final Map<String, String> properties;
+  private final Map<String, PropertyTemplate> templates;
 
   public SignatureCalloutBase(Map properties) {
     this.properties = genericizeMap(properties);
+    this.templates = compileTemplates(this.properties);
+  }
+
+  private static Map<String, PropertyTemplate> compileTemplates(Map<String, String> properties) {
+    // parse each property once; per-request resolution only looks up the referenced variables
+    Map<String, PropertyTemplate> m = new HashMap<String, PropertyTemplate>();
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      PropertyTemplate template = PropertyTemplate.compile(entry.getValue());
+      if (template != null) {
+        m.put(entry.getKey(), template);
+      }
+    }
+    return Collections.unmodifiableMap(m);
+  }
+
+  /** Returns true if the property is present and not blank. */
+  protected boolean isPropertySet(String name) {
+    return templates.containsKey(name);
+  }
+
+  /** Returns true if the property is set and contains no variable references. */
+  protected boolean isStaticProperty(String name) {
+    PropertyTemplate template = templates.get(name);
+    return template != null && template.isLiteral();
   }
 
   protected static String varName(String s) {
@@ -58,13 +79,12 @@ public abstract class SignatureCalloutBase {
   }
 
   protected String _getStringProp(MessageContext msgCtxt, String name, String defaultValue) {
-    String value = this.properties.get(name);
-    if (value != null) value = value.trim();
-    if (value == null || value.equals("")) {
+    PropertyTemplate template = templates.get(name);
+    if (template == null) {
       return defaultValue;
     }
-    value = resolveVariableReferences(value, msgCtxt);
-    if (value == null || value.equals("")) {
+    String value = template.resolve(msgCtxt);
+    if (value.equals("")) {
       value = defaultValue;
     }
     return value;
@@ -82,39 +102,14 @@ public abstract class SignatureCalloutBase {
     return _getStringProp(msgCtxt, name, null);
   }
 
-  private String resolveVariableReferences(String spec, MessageContext msgCtxt) {
-    Matcher matcher = variableReferencePattern.matcher(spec);
-    StringBuffer sb = new StringBuffer();
-    while (matcher.find()) {
-      matcher.appendReplacement(sb, "");
-      sb.append(matcher.group(1));
-      String ref = matcher.group(2);
-      String[] parts = ref.split(":", 2);
-      Object v = msgCtxt.getVariable(parts[0]);
-      if (v != null) {
-        sb.append((String) v);
-      } else if (parts.length > 1) {
-        sb.append(parts[1]);
-      }
-      sb.append(matcher.group(3));
-    }
-    matcher.appendTail(sb);
-    return sb.toString();
-  }
-
   protected boolean getDebug(MessageContext msgCtxt) throws Exception {
     return _getBooleanProperty(msgCtxt, "debug", false);
   }
 
   protected boolean _getBooleanProperty(MessageContext msgCtxt, String propName, boolean defaultValue)
       throws Exception {
-    String flag = this.properties.get(propName);
-    if (flag != null) flag = flag.trim();
-    if (flag == null || flag.equals("")) {
-      return defaultValue;
-    }
-    flag = resolveVariableReferences(flag, msgCtxt);
-    if (flag == null || flag.equals("")) {
+    String flag = _getStringProp(msgCtxt, propName, null);
+    if (flag == null) {
       return defaultValue;
     }
     return flag.equalsIgnoreCase("true");
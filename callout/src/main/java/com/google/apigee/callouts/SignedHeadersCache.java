@@ -0,0 +1,75 @@
+// SignedHeadersCache.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A small, lock-free cache of SignedHeaders values, keyed by the sorted sequence of header names.
+ * Requests built from the same template sign the same headers, so the common shape costs a lookup
+ * rather than building the string again. The cache is direct-mapped: each shape has a single slot,
+ * and a new shape simply replaces whatever occupied it.
+ */
+final class SignedHeadersCache {
+  static final int DEFAULT_SLOTS = 64;
+
+  static final class Entry {
+    final String[] names;
+    /** The names joined with ';', as used in the canonical request. */
+    final String value;
+    /** The UTF-8 bytes of the value. */
+    final byte[] bytes;
+    /** The Authorization header fragment, ", SignedHeaders=...". */
+    final String authorizationFragment;
+
+    Entry(String[] names) {
+      this.names = names;
+      StringBuilder sb = new StringBuilder(16 * names.length);
+      for (int i = 0; i < names.length; i++) {
+        if (i > 0) sb.append(';');
+        sb.append(names[i]);
+      }
+      this.value = sb.toString();
+      this.bytes = value.getBytes(StandardCharsets.UTF_8);
+      this.authorizationFragment = ", SignedHeaders=" + value;
+    }
+  }
+
+  private final AtomicReferenceArray<Entry> slots;
+  private final int mask;
+
+  /** The number of slots is rounded up to a power of two. */
+  SignedHeadersCache(int slots) {
+    int n = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+    this.slots = new AtomicReferenceArray<Entry>(n);
+    this.mask = n - 1;
+  }
+
+  Entry get(HeaderTable headers) {
+    int h = headers.namesHash();
+    int slot = (h ^ (h >>> 16)) & mask;
+    Entry entry = slots.get(slot);
+    if (entry != null && headers.hasNames(entry.names)) {
+      return entry;
+    }
+    entry = new Entry(headers.names());
+    slots.set(slot, entry);
+    return entry;
+  }
+}
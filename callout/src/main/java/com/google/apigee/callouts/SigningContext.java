@@ -0,0 +1,134 @@
+// SigningContext.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.message.Message;
+import com.apigee.flow.message.MessageContext;
+import com.google.apigee.encoding.Base16;
+
+/**
+ * The state of one signing operation, together with the buffers and collections it uses. Each
+ * thread keeps one instance and resets it between requests, so steady-state signing allocates
+ * little beyond the strings that get written back to the message.
+ *
+ * <p>Apigee runs a single callout instance on many threads at once, so nothing here may be shared
+ * between threads: an instance is obtained with {@link #acquire}, used only on the calling thread,
+ * and handed back with {@link #release}. If the thread's instance is somehow still in use, acquire
+ * returns a fresh one rather than sharing it.
+ */
+final class SigningContext {
+  private static final ThreadLocal<SigningContext> current =
+      ThreadLocal.withInitial(SigningContext::new);
+
+  final CryptoContext crypto = CryptoContext.get();
+  final Utf8Buffer canonicalRequest = new Utf8Buffer(1024);
+  final Utf8Buffer stringToSign = new Utf8Buffer(256);
+  final CanonicalQuery query = new CanonicalQuery();
+  final HeaderTable headers = new HeaderTable();
+  final byte[] payloadHash = new byte[32];
+  final byte[] canonicalRequestHash = new byte[32];
+  final byte[] signature = new byte[32];
+  final char[] hex = new char[64];
+  final StringBuilder text = new StringBuilder(256);
+  private boolean inUse;
+
+  // per-request state, cleared by reset()
+  MessageContext msgCtxt;
+  Message sourceMessage;
+  boolean debug;
+  Endpoint endpoint;
+  String host;
+  String verb;
+  String path;
+  String dateTimeStamp;
+  AmzDateClock.Stamp stamp; // null when the date comes from the request
+  String dateStamp;
+  String region;
+  String service;
+  String secret;
+  String key;
+  String scope;
+  String output;
+  String expiry;
+  String contentSha256; // the hex payload hash, set only when it is sent as a header
+  boolean wantSignedContentSha256;
+  boolean insureTrailingSlashOnPath;
+  boolean hmacMidstate;
+  String canonicalQueryString; // set when taken from the canonical query cache
+  SignedHeadersCache.Entry signedHeaders;
+
+  private SigningContext() {}
+
+  static SigningContext acquire() {
+    SigningContext context = current.get();
+    if (context.inUse) {
+      context = new SigningContext();
+    }
+    context.inUse = true;
+    return context.reset();
+  }
+
+  void release() {
+    reset();
+    inUse = false;
+  }
+
+  private SigningContext reset() {
+    canonicalRequest.reset();
+    stringToSign.reset();
+    query.reset();
+    headers.reset();
+    text.setLength(0);
+    msgCtxt = null;
+    sourceMessage = null;
+    debug = false;
+    endpoint = null;
+    host = null;
+    verb = null;
+    path = null;
+    dateTimeStamp = null;
+    stamp = null;
+    dateStamp = null;
+    region = null;
+    service = null;
+    secret = null;
+    key = null;
+    scope = null;
+    output = null;
+    expiry = null;
+    contentSha256 = null;
+    wantSignedContentSha256 = false;
+    insureTrailingSlashOnPath = false;
+    hmacMidstate = false;
+    canonicalQueryString = null;
+    signedHeaders = null;
+    return this;
+  }
+
+  /** Returns the text builder, emptied. */
+  StringBuilder text() {
+    text.setLength(0);
+    return text;
+  }
+
+  /** Appends the lowercase hex form of the bytes, without an intermediate String. */
+  StringBuilder appendHex(StringBuilder sb, byte[] bytes) {
+    Base16.encode(bytes, hex, 0, false);
+    return sb.append(hex, 0, bytes.length * 2);
+  }
+}
@@ -0,0 +1,232 @@
+// SigningKeyCache.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A bounded, concurrent cache of derived SigV4 signing keys.
+ *
+ * <p>The signing key depends only on the secret, the date stamp, the region and the service, so it
+ * changes at most once per UTC day for a given credential. Entries are keyed by a SHA-256 digest of
+ * the secret, never by the secret itself. When a newer date stamp is observed, entries for earlier
+ * days are evicted.
+ *
+ * <p>Each entry can also hold HMAC state that has already absorbed the signing key and the constant
+ * prefix of the string-to-sign, so that signing a request requires only cloning that state and
+ * hashing the remaining suffix.
+ */
+final class SigningKeyCache {
+  static final int DEFAULT_MAX_ENTRIES = 256;
+
+  private final int maxEntries;
+  private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private volatile String latestDateStamp = "";
+
+  SigningKeyCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  static final class Key {
+    final byte[] secretDigest;
+    final String dateStamp;
+    final String region;
+    final String service;
+    private final int hash;
+
+    Key(byte[] secretDigest, String dateStamp, String region, String service) {
+      this.secretDigest = secretDigest;
+      this.dateStamp = dateStamp;
+      this.region = region;
+      this.service = service;
+      int h = Arrays.hashCode(secretDigest);
+      h = 31 * h + dateStamp.hashCode();
+      h = 31 * h + region.hashCode();
+      h = 31 * h + service.hashCode();
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key other = (Key) o;
+      return hash == other.hash
+          && dateStamp.equals(other.dateStamp)
+          && region.equals(other.region)
+          && service.equals(other.service)
+          && Arrays.equals(secretDigest, other.secretDigest);
+    }
+  }
+
+  static final class Entry {
+    final byte[] signingKey;
+    private volatile Mac keyed;
+    private volatile Prefixed prefixed;
+    private volatile boolean cloneable = true;
+
+    Entry(byte[] signingKey) {
+      this.signingKey = signingKey;
+    }
+
+    /**
+     * Returns a new Mac, initialized with the signing key, that has already absorbed the
+     * string-to-sign prefix for the given timestamp and scope. The caller supplies the remaining
+     * bytes and calls doFinal. Returns null if the provider does not support cloning Mac state.
+     */
+    Mac newStringToSignMac(String dateTimeStamp, String scope) throws GeneralSecurityException {
+      if (!cloneable) {
+        return null;
+      }
+      try {
+        Prefixed p = prefixed;
+        if (p == null || !p.dateTimeStamp.equals(dateTimeStamp) || !p.scope.equals(scope)) {
+          Mac mac = (Mac) keyed().clone();
+          mac.update(
+              (AWSV4Signature.ALGORITHM + "\n" + dateTimeStamp + "\n" + scope + "\n")
+                  .getBytes(StandardCharsets.UTF_8));
+          p = new Prefixed(dateTimeStamp, scope, mac);
+          prefixed = p;
+        }
+        return (Mac) p.mac.clone();
+      } catch (CloneNotSupportedException e) {
+        cloneable = false;
+        return null;
+      }
+    }
+
+    private Mac keyed() throws GeneralSecurityException {
+      Mac mac = keyed;
+      if (mac == null) {
+        mac = Mac.getInstance(CryptoContext.HMAC_ALGORITHM);
+        mac.init(new SecretKeySpec(signingKey, CryptoContext.HMAC_ALGORITHM));
+        keyed = mac;
+      }
+      return mac;
+    }
+  }
+
+  /** HMAC state after absorbing the string-to-sign prefix; never updated once published. */
+  private static final class Prefixed {
+    final String dateTimeStamp;
+    final String scope;
+    final Mac mac;
+
+    Prefixed(String dateTimeStamp, String scope, Mac mac) {
+      this.dateTimeStamp = dateTimeStamp;
+      this.scope = scope;
+      this.mac = mac;
+    }
+  }
+
+  /**
+   * Returns the signing key for the given inputs, deriving and caching it on a miss. The returned
+   * array is shared; callers must not modify it.
+   */
+  byte[] getSigningKey(String secret, String dateStamp, String region, String service)
+      throws Exception {
+    return getEntry(secret, dateStamp, region, service).signingKey;
+  }
+
+  Entry getEntry(String secret, String dateStamp, String region, String service)
+      throws Exception {
+    Key key =
+        new Key(
+            AWSV4Signature.sha256(secret.getBytes(StandardCharsets.UTF_8)),
+            dateStamp,
+            region,
+            service);
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      hits.incrementAndGet();
+      return entry;
+    }
+    misses.incrementAndGet();
+    entry = new Entry(deriveSigningKey(secret, dateStamp, region, service));
+    noteDateStamp(dateStamp);
+    if (entries.size() >= maxEntries) {
+      evictOlderThan(latestDateStamp, true);
+    }
+    if (entries.size() < maxEntries) {
+      Entry existing = entries.putIfAbsent(key, entry);
+      if (existing != null) {
+        entry = existing;
+      }
+    }
+    return entry;
+  }
+
+  static byte[] deriveSigningKey(String secret, String dateStamp, String region, String service)
+      throws Exception {
+    byte[] kSecret = ("AWS4" + secret).getBytes(StandardCharsets.UTF_8);
+    byte[] kDate = AWSV4Signature.hmacsha256(dateStamp, kSecret);
+    byte[] kRegion = AWSV4Signature.hmacsha256(region, kDate);
+    byte[] kService = AWSV4Signature.hmacsha256(service, kRegion);
+    return AWSV4Signature.hmacsha256("aws4_request", kService);
+  }
+
+  private void noteDateStamp(String dateStamp) {
+    String latest = latestDateStamp;
+    if (dateStamp.compareTo(latest) > 0) {
+      // day rollover; keys for previous days will not be requested again in steady state
+      latestDateStamp = dateStamp;
+      evictOlderThan(dateStamp, false);
+    }
+  }
+
+  private void evictOlderThan(String dateStamp, boolean includeOtherDays) {
+    Iterator<Key> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      int cmp = it.next().dateStamp.compareTo(dateStamp);
+      if (cmp < 0 || (includeOtherDays && cmp != 0)) {
+        it.remove();
+      }
+    }
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  void clear() {
+    entries.clear();
+    latestDateStamp = "";
+  }
+}
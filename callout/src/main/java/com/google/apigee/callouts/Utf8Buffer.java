@@ -0,0 +1,136 @@
+// Utf8Buffer.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.google.apigee.encoding.Base16;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import javax.crypto.Mac;
+
+/**
+ * A growable byte buffer that encodes appended text as UTF-8. It is meant to be reset and reused,
+ * so that the canonical request and the string-to-sign can be fed to a digest or a Mac without
+ * first building intermediate Strings.
+ */
+final class Utf8Buffer {
+  private byte[] bytes;
+  private int length;
+
+  Utf8Buffer(int initialCapacity) {
+    bytes = new byte[initialCapacity];
+  }
+
+  Utf8Buffer reset() {
+    length = 0;
+    return this;
+  }
+
+  int length() {
+    return length;
+  }
+
+  byte[] array() {
+    return bytes;
+  }
+
+  private void ensureCapacity(int additional) {
+    int required = length + additional;
+    if (required > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+    }
+  }
+
+  /** Appends a character known to be ASCII. */
+  Utf8Buffer append(char c) {
+    ensureCapacity(1);
+    bytes[length++] = (byte) c;
+    return this;
+  }
+
+  Utf8Buffer append(byte[] a) {
+    ensureCapacity(a.length);
+    System.arraycopy(a, 0, bytes, length, a.length);
+    length += a.length;
+    return this;
+  }
+
+  /** Appends the lower case hexadecimal digits for the given bytes. */
+  Utf8Buffer appendHex(byte[] a) {
+    ensureCapacity(a.length * 2);
+    length = Base16.encode(a, bytes, length, false);
+    return this;
+  }
+
+  Utf8Buffer append(CharSequence s) {
+    int n = s.length();
+    ensureCapacity(n);
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        bytes[length++] = (byte) c;
+      } else {
+        i = appendNonAscii(s, i);
+      }
+    }
+    return this;
+  }
+
+  /** Appends the code point starting at index i, returning the index of its last char. */
+  private int appendNonAscii(CharSequence s, int i) {
+    char c = s.charAt(i);
+    ensureCapacity(4 + s.length() - i);
+    if (c < 0x800) {
+      bytes[length++] = (byte) (0xC0 | (c >> 6));
+      bytes[length++] = (byte) (0x80 | (c & 0x3F));
+      return i;
+    }
+    if (Character.isHighSurrogate(c)
+        && i + 1 < s.length()
+        && Character.isLowSurrogate(s.charAt(i + 1))) {
+      int cp = Character.toCodePoint(c, s.charAt(i + 1));
+      bytes[length++] = (byte) (0xF0 | (cp >> 18));
+      bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+      bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+      bytes[length++] = (byte) (0x80 | (cp & 0x3F));
+      return i + 1;
+    }
+    if (Character.isSurrogate(c)) {
+      // unpaired surrogate; String.getBytes(UTF_8) substitutes '?'
+      bytes[length++] = (byte) '?';
+      return i;
+    }
+    bytes[length++] = (byte) (0xE0 | (c >> 12));
+    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+    return i;
+  }
+
+  void updateDigest(MessageDigest digest) {
+    digest.update(bytes, 0, length);
+  }
+
+  void updateMac(Mac mac) {
+    mac.update(bytes, 0, length);
+  }
+
+  @Override
+  public String toString() {
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+}
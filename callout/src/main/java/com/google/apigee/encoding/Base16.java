@@ -1,9 +1,23 @@
 package com.google.apigee.encoding;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public class Base16 {
+  private static final char[] LOWER = "0123456789abcdef".toCharArray();
+  private static final char[] UPPER = "0123456789ABCDEF".toCharArray();
+  private static final byte[] DIGITS = new byte[128];
+
+  static {
+    Arrays.fill(DIGITS, (byte) -1);
+    for (int i = 0; i < 16; i++) {
+      DIGITS[LOWER[i]] = (byte) i;
+      DIGITS[UPPER[i]] = (byte) i;
+    }
+  }
 
   /**
-   * Create a byte Array from String of hexadecimal digits using Character conversion
+   * Create a byte Array from String of hexadecimal digits
    *
    * @param hexString - Hexadecimal digits as String
    * @return Desired byte Array
@@ -15,40 +29,90 @@ public class Base16 {
     byte[] bytes = new byte[hexString.length() / 2];
 
     for (int i = 0; i < hexString.length(); i += 2) {
-      bytes[i / 2] = hexToByte(hexString.substring(i, i + 2));
+      bytes[i / 2] =
+          (byte) ((toDigit(hexString.charAt(i)) << 4) + toDigit(hexString.charAt(i + 1)));
     }
     return bytes;
   }
 
   /**
-   * Create a String of hexadecimal digits from a byte Array using Character conversion
+   * Create a String of hexadecimal digits from a byte Array
    *
    * @param byteArray - The byte Array
    * @return Desired String of hexadecimal digits in lower case
    */
   public static String encode(byte[] byteArray) {
-    StringBuffer hexStringBuffer = new StringBuffer();
-    for (int i = 0; i < byteArray.length; i++) {
-      hexStringBuffer.append(byteToHex(byteArray[i]));
+    char[] hexDigits = new char[byteArray.length * 2];
+    encode(byteArray, hexDigits, 0, false);
+    return new String(hexDigits);
+  }
+
+  /**
+   * Write the hexadecimal digits for a byte Array into a char Array
+   *
+   * @param src - The byte Array
+   * @param dst - The destination, with room for 2 chars per source byte
+   * @param offset - The position in dst of the first digit
+   * @param upperCase - true for upper case digits, false for lower case
+   * @return The position in dst following the last digit
+   */
+  public static int encode(byte[] src, char[] dst, int offset, boolean upperCase) {
+    char[] digits = upperCase ? UPPER : LOWER;
+    for (int i = 0; i < src.length; i++) {
+      int b = src[i];
+      dst[offset++] = digits[(b >> 4) & 0xF];
+      dst[offset++] = digits[b & 0xF];
     }
-    return hexStringBuffer.toString();
+    return offset;
   }
 
-  public static String byteToHex(byte num) {
-    char[] hexDigits = new char[2];
-    hexDigits[0] = Character.forDigit((num >> 4) & 0xF, 16);
-    hexDigits[1] = Character.toUpperCase(Character.forDigit((num & 0xF), 16));
-    return new String(hexDigits);
+  /**
+   * Write the hexadecimal digits for a byte Array, as ASCII bytes, into a byte Array
+   *
+   * @param src - The byte Array
+   * @param dst - The destination, with room for 2 bytes per source byte
+   * @param offset - The position in dst of the first digit
+   * @param upperCase - true for upper case digits, false for lower case
+   * @return The position in dst following the last digit
+   */
+  public static int encode(byte[] src, byte[] dst, int offset, boolean upperCase) {
+    char[] digits = upperCase ? UPPER : LOWER;
+    for (int i = 0; i < src.length; i++) {
+      int b = src[i];
+      dst[offset++] = (byte) digits[(b >> 4) & 0xF];
+      dst[offset++] = (byte) digits[b & 0xF];
+    }
+    return offset;
   }
 
-  private static byte hexToByte(String hexString) {
-    int firstDigit = toDigit(hexString.charAt(0));
-    int secondDigit = toDigit(hexString.charAt(1));
-    return (byte) ((firstDigit << 4) + secondDigit);
+  /**
+   * Write the hexadecimal digits for a byte Array, as ASCII bytes, into a ByteBuffer
+   *
+   * @param src - The byte Array
+   * @param dst - The destination, with at least 2 bytes remaining per source byte
+   * @param upperCase - true for upper case digits, false for lower case
+   */
+  public static void encode(byte[] src, ByteBuffer dst, boolean upperCase) {
+    char[] digits = upperCase ? UPPER : LOWER;
+    for (int i = 0; i < src.length; i++) {
+      int b = src[i];
+      dst.put((byte) digits[(b >> 4) & 0xF]);
+      dst.put((byte) digits[b & 0xF]);
+    }
+  }
+
+  /**
+   * Create a String of two upper case hexadecimal digits for a single byte
+   *
+   * @param num - The byte
+   * @return The hexadecimal digits
+   */
+  public static String byteToHex(byte num) {
+    return new String(new char[] {UPPER[(num >> 4) & 0xF], UPPER[num & 0xF]});
   }
 
   private static int toDigit(char hexChar) {
-    int digit = Character.digit(hexChar, 16);
+    int digit = (hexChar < 128) ? DIGITS[hexChar] : -1;
     if (digit == -1) {
       throw new IllegalArgumentException("Invalid Hexadecimal Character: " + hexChar);
     }
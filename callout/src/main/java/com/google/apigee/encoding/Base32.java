@@ -18,8 +18,6 @@ package com.google.apigee.encoding;
 
 import java.security.SecureRandom;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Locale;
 
 /**
  * Encodes arbitrary byte arrays as case-insensitive base-32 strings.
@@ -53,7 +51,7 @@ public class Base32 {
     private char[] DIGITS;
     private int MASK;
     private int SHIFT;
-    private HashMap<Character, Integer> CHAR_MAP;
+    private byte[] CHAR_MAP; // indexed by ASCII char; -1 for chars not in the alphabet
 
     static final String SEPARATOR = "-";
 
@@ -62,9 +60,12 @@ public class Base32 {
         DIGITS = ALPHABET.toCharArray();
         MASK = DIGITS.length - 1;
         SHIFT = Integer.numberOfTrailingZeros(DIGITS.length);
-        CHAR_MAP = new HashMap<Character, Integer>();
+        CHAR_MAP = new byte[128];
+        Arrays.fill(CHAR_MAP, (byte) -1);
         for (int i = 0; i < DIGITS.length; i++) {
-            CHAR_MAP.put(DIGITS[i], i);
+            CHAR_MAP[DIGITS[i]] = (byte) i;
+            // decoding is case-insensitive
+            CHAR_MAP[Character.toLowerCase(DIGITS[i])] = (byte) i;
         }
     }
 
@@ -72,32 +73,51 @@ public class Base32 {
         return getInstance().decodeInternal(encoded);
     }
 
-    protected byte[] decodeInternal(String encoded) throws DecodingException {
-        // Remove whitespace and separators
-        encoded = encoded.trim().replaceAll(SEPARATOR, "").replaceAll(" ", "");
+    private static boolean isSeparator(char c) {
+        return c == SEPARATOR.charAt(0) || c == ' ';
+    }
 
-        // Remove padding. Note: the padding is used as hint to determine how many
-        // bits to decode from the last incomplete chunk (which is commented out
-        // below, so this may have been wrong to start with).
-        encoded = encoded.replaceFirst("[=]*$", "");
+    protected byte[] decodeInternal(String encoded) throws DecodingException {
+        // Skip surrounding whitespace, then trailing padding and separators. Note:
+        // the padding is used as hint to determine how many bits to decode from
+        // the last incomplete chunk (which is commented out below, so this may
+        // have been wrong to start with).
+        int start = 0;
+        int end = encoded.length();
+        while (start < end && encoded.charAt(start) <= ' ') start++;
+        while (end > start && encoded.charAt(end - 1) <= ' ') end--;
+        while (end > start
+                && (encoded.charAt(end - 1) == '=' || isSeparator(encoded.charAt(end - 1)))) {
+            end--;
+        }
 
-        // Canonicalize to all upper case
-        encoded = encoded.toUpperCase(Locale.US);
-        if (encoded.length() == 0) {
+        // Separators within the string are ignored
+        int encodedLength = 0;
+        for (int i = start; i < end; i++) {
+            if (!isSeparator(encoded.charAt(i))) encodedLength++;
+        }
+        if (encodedLength == 0) {
             return new byte[0];
         }
-        int encodedLength = encoded.length();
         int outLength = encodedLength * SHIFT / 8;
         byte[] result = new byte[outLength];
         int buffer = 0;
         int next = 0;
         int bitsLeft = 0;
-        for (char c : encoded.toCharArray()) {
-            if (!CHAR_MAP.containsKey(c)) {
+        for (int i = start; i < end; i++) {
+            char c = encoded.charAt(i);
+            if (isSeparator(c)) {
+                continue;
+            }
+            if (c >= 128) {
+                c = Character.toUpperCase(c);
+            }
+            int value = (c < 128) ? CHAR_MAP[c] : -1;
+            if (value < 0) {
                 throw new DecodingException("Illegal character: " + c);
             }
             buffer <<= SHIFT;
-            buffer |= CHAR_MAP.get(c) & MASK;
+            buffer |= value & MASK;
             bitsLeft += SHIFT;
             if (bitsLeft >= 8) {
                 result[next++] = (byte) (buffer >> (bitsLeft - 8));
@@ -129,7 +149,8 @@ public class Base32 {
         }
 
         int outputLength = (data.length * 8 + SHIFT - 1) / SHIFT;
-        StringBuilder result = new StringBuilder(outputLength);
+        char[] result = new char[outputLength];
+        int position = 0;
 
         int buffer = data[0];
         int next = 1;
@@ -148,9 +169,9 @@ public class Base32 {
             }
             int index = MASK & (buffer >> (bitsLeft - SHIFT));
             bitsLeft -= SHIFT;
-            result.append(DIGITS[index]);
+            result[position++] = DIGITS[index];
         }
-        return result.toString();
+        return new String(result);
     }
 
     public static class DecodingException extends RuntimeException {
@@ -0,0 +1,113 @@
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.encoding;
+
+/**
+ * Single-pass percent encoder. Characters in the chosen safe set pass through; every other
+ * character is encoded as UTF-8, and each byte is written as %XX with uppercase hex digits.
+ */
+public final class PercentEncoder {
+  private static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+
+  /** A set of ASCII characters that are written without encoding. */
+  public static final class SafeChars {
+    private final boolean[] safe = new boolean[128];
+
+    private SafeChars(String extra) {
+      for (char c = 'A'; c <= 'Z'; c++) safe[c] = true;
+      for (char c = 'a'; c <= 'z'; c++) safe[c] = true;
+      for (char c = '0'; c <= '9'; c++) safe[c] = true;
+      for (int i = 0; i < extra.length(); i++) safe[extra.charAt(i)] = true;
+    }
+
+    public boolean isSafe(char c) {
+      return c < 128 && safe[c];
+    }
+  }
+
+  /** The RFC 3986 unreserved characters, as required for SigV4 canonicalization. */
+  public static final SafeChars UNRESERVED = new SafeChars("-_.~");
+
+  /** Unreserved characters plus the slash, for encoding a path. */
+  public static final SafeChars UNRESERVED_AND_SLASH = new SafeChars("-_.~/");
+
+  /** The characters left alone by the JavaScript encodeURIComponent function. */
+  public static final SafeChars URI_COMPONENT = new SafeChars("-_.~!*'()");
+
+  private PercentEncoder() {}
+
+  /** Returns the index of the first character that must be encoded, or -1 if there is none. */
+  public static int firstUnsafe(CharSequence s, SafeChars safeChars) {
+    for (int i = 0; i < s.length(); i++) {
+      if (!safeChars.isSafe(s.charAt(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the encoded value, or the input itself when nothing needs encoding. */
+  public static String encode(String s, SafeChars safeChars) {
+    int first = firstUnsafe(s, safeChars);
+    if (first < 0) {
+      return s;
+    }
+    StringBuilder sb = new StringBuilder(s.length() + 16);
+    sb.append(s, 0, first);
+    return encodeFrom(s, first, safeChars, sb).toString();
+  }
+
+  /** Appends the encoded value to the given builder. */
+  public static StringBuilder encode(CharSequence s, SafeChars safeChars, StringBuilder sb) {
+    return encodeFrom(s, 0, safeChars, sb);
+  }
+
+  private static StringBuilder encodeFrom(
+      CharSequence s, int start, SafeChars safeChars, StringBuilder sb) {
+    int n = s.length();
+    for (int i = start; i < n; i++) {
+      char c = s.charAt(i);
+      if (safeChars.isSafe(c)) {
+        sb.append(c);
+      } else if (c < 0x80) {
+        appendByte(sb, c);
+      } else if (c < 0x800) {
+        appendByte(sb, 0xC0 | (c >> 6));
+        appendByte(sb, 0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < n
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, s.charAt(++i));
+        appendByte(sb, 0xF0 | (cp >> 18));
+        appendByte(sb, 0x80 | ((cp >> 12) & 0x3F));
+        appendByte(sb, 0x80 | ((cp >> 6) & 0x3F));
+        appendByte(sb, 0x80 | (cp & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        // unpaired surrogate; the UTF-8 encoder in the JRE substitutes '?'
+        appendByte(sb, '?');
+      } else {
+        appendByte(sb, 0xE0 | (c >> 12));
+        appendByte(sb, 0x80 | ((c >> 6) & 0x3F));
+        appendByte(sb, 0x80 | (c & 0x3F));
+      }
+    }
+    return sb;
+  }
+
+  private static void appendByte(StringBuilder sb, int b) {
+    sb.append('%').append(UPPER_HEX[(b >> 4) & 0xF]).append(UPPER_HEX[b & 0xF]);
+  }
+}
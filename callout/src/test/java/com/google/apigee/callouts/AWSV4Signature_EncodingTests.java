@@ -16,6 +16,13 @@
 
 package com.google.apigee.callouts;
 
+import com.google.apigee.encoding.Base16;
+import com.google.apigee.encoding.Base32;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -46,7 +53,10 @@ public class AWSV4Signature_EncodingTests extends TestBase {
             new EncodingTestCase(
                 "arn:aws:lambda:ca-central-1:992382745483:function:get-pets",
                 "arn%3Aaws%3Alambda%3Aca-central-1%3A992382745483%3Afunction%3Aget-pets")
-          }
+          },
+          new Object[] {new EncodingTestCase("photos/café.jpg", "photos%2Fcaf%C3%A9.jpg")},
+          new Object[] {new EncodingTestCase("€ 100", "%E2%82%AC%20100")},
+          new Object[] {new EncodingTestCase("\uD83D\uDE00", "%F0%9F%98%80")}
         };
 
     return cases;
@@ -58,4 +68,240 @@ public class AWSV4Signature_EncodingTests extends TestBase {
     String actualEncodedResult = AWSV4Signature.uriEncode(tc.input, true);
     Assert.assertEquals(actualEncodedResult, tc.expected);
   }
+
+  @Test
+  public void uriEncodePathTest() {
+    Assert.assertEquals(
+        AWSV4Signature.uriEncode("/photos/café.jpg", false), "/photos/caf%C3%A9.jpg");
+    Assert.assertEquals(AWSV4Signature.uriEncode("/example space/", false), "/example%20space/");
+  }
+
+  @Test
+  public void encodeURIComponentTest() {
+    Assert.assertEquals(AWSV4Signature.encodeURIComponent("a b+c"), "a%20b%2Bc");
+    Assert.assertEquals(AWSV4Signature.encodeURIComponent("!'()*~-_."), "!'()*~-_.");
+    Assert.assertEquals(AWSV4Signature.encodeURIComponent("é/="), "%C3%A9%2F%3D");
+    String unchanged = "Param1";
+    Assert.assertSame(AWSV4Signature.encodeURIComponent(unchanged), unchanged);
+  }
+
+  @Test
+  public void base16Test() {
+    byte[] bytes = new byte[] {0x00, 0x1f, (byte) 0xa0, (byte) 0xff};
+    Assert.assertEquals(Base16.encode(bytes), "001fa0ff");
+    Assert.assertEquals(Base16.decode("001FA0ff"), bytes);
+    Assert.assertEquals(Base16.byteToHex((byte) 0xa0), "A0");
+
+    char[] chars = new char[10];
+    Assert.assertEquals(Base16.encode(bytes, chars, 2, true), 10);
+    Assert.assertEquals(new String(chars, 2, 8), "001FA0FF");
+  }
+
+  @Test
+  public void base32Test() {
+    byte[] bytes = "foobar".getBytes(StandardCharsets.UTF_8);
+    Assert.assertEquals(Base32.encode(bytes), "MZXW6YTBOI");
+    Assert.assertEquals(Base32.decode(" mzxw-6ytb oi====\n"), bytes);
+    try {
+      Base32.decode("MZXW6=YTBOI");
+      Assert.fail("expected an exception");
+    } catch (Base32.DecodingException e) {
+      Assert.assertEquals(e.getMessage(), "Illegal character: =");
+    }
+  }
+
+  @DataProvider(name = "paths")
+  public Object[][] getPaths() {
+    return new Object[][] {
+      new Object[] {"/", false, "/"},
+      new Object[] {"/", true, "//"},
+      new Object[] {"//", false, "/"},
+      new Object[] {"/./", false, "/"},
+      new Object[] {"/./example", false, "/example"},
+      new Object[] {"//example//", false, "/example/"},
+      new Object[] {"/example/..", false, "/"},
+      new Object[] {"/example1/example2/../..", false, "/"},
+      new Object[] {"/../a/./b/", false, "/a/b/"},
+      new Object[] {"/v1/LookupUser", true, "/v1/LookupUser/"},
+      new Object[] {"relative/path", false, "/relative/path"}
+    };
+  }
+
+  @Test(dataProvider = "paths")
+  public void normalizePathTest(String path, boolean insureTrailingSlash, String expected) {
+    Assert.assertEquals(PathNormalizer.normalize(path, insureTrailingSlash), expected, path);
+  }
+
+  @Test
+  public void normalizedPathIsReturnedAsIs() {
+    String path = "/already/normal/";
+    Assert.assertSame(PathNormalizer.normalize(path, false), path);
+  }
+
+  @DataProvider(name = "queries")
+  public Object[][] getQueries() {
+    return new Object[][] {
+      new Object[] {"", ""},
+      new Object[] {"Param2=value2&Param1=value1", "Param1=value1&Param2=value2"},
+      new Object[] {"Param1=value2&Param1=Value1", "Param1=Value1&Param1=value2"},
+      new Object[] {"p2&p1=1&&", "p1=1&p2"},
+      new Object[] {"prefix=a+b%2Fc&max-keys=2", "max-keys=2&prefix=a%20b%2Fc"},
+      new Object[] {"a%7E=1&a%C3%A9=2", "a%C3%A9=2&a~=1"},
+      new Object[] {"q=%zz%4", "q=%25zz%254"},
+      new Object[] {"k=%E1%88%B4", "k=%E1%88%B4"}
+    };
+  }
+
+  @Test(dataProvider = "queries")
+  public void canonicalQueryTest(String rawQuery, String expected) {
+    Assert.assertEquals(new CanonicalQuery().addRaw(rawQuery).toString(), expected, rawQuery);
+  }
+
+  @Test
+  public void canonicalQuerySortsManyParams() {
+    CanonicalQuery query = new CanonicalQuery();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 99; i >= 0; i--) {
+      query.add(String.format("p%02d", i), "v");
+    }
+    for (int i = 0; i < 100; i++) {
+      if (i > 0) expected.append('&');
+      expected.append(String.format("p%02d=v", i));
+    }
+    Assert.assertEquals(query.toString(), expected.toString());
+    Assert.assertEquals(query.reset().size(), 0);
+  }
+
+  @Test
+  public void headerTableTest() {
+    HeaderTable headers = new HeaderTable();
+    headers.put("x-amz-content-sha256", "a");
+    headers.put("x-amz-date", "20150830T123600Z");
+    headers.put("content-type", "text/plain");
+    headers.put("x-amz-content-sha256", "b");
+    headers.put("host", "example.amazonaws.com");
+    Assert.assertFalse(headers.putIfAbsent("x-amz-date", "20240101T000000Z"));
+    Assert.assertEquals(headers.size(), 4);
+    Assert.assertEquals(headers.get("x-amz-content-sha256"), "b");
+    Assert.assertNull(headers.get("accept"));
+
+    Utf8Buffer canonicalHeaders = new Utf8Buffer(64);
+    headers.appendTo(canonicalHeaders);
+    Assert.assertEquals(
+        canonicalHeaders.toString(),
+        "content-type:text/plain\n"
+            + "host:example.amazonaws.com\n"
+            + "x-amz-content-sha256:b\n"
+            + "x-amz-date:20150830T123600Z\n");
+
+    SignedHeadersCache cache = new SignedHeadersCache(4);
+    SignedHeadersCache.Entry signedHeaders = cache.get(headers);
+    Assert.assertEquals(signedHeaders.value, "content-type;host;x-amz-content-sha256;x-amz-date");
+    Assert.assertEquals(
+        signedHeaders.authorizationFragment,
+        ", SignedHeaders=content-type;host;x-amz-content-sha256;x-amz-date");
+
+    // same names, different values: the cached entry is returned
+    HeaderTable other = new HeaderTable();
+    other.put("x-amz-date", "20240101T000000Z");
+    other.put("host", "other.amazonaws.com");
+    other.put("x-amz-content-sha256", "c");
+    other.put("content-type", "application/json");
+    Assert.assertSame(cache.get(other), signedHeaders);
+    other.put("accept", "*/*");
+    Assert.assertEquals(
+        cache.get(other).value, "accept;content-type;host;x-amz-content-sha256;x-amz-date");
+  }
+
+  @DataProvider(name = "headerValues")
+  public Object[][] getHeaderValues() {
+    return new Object[][] {
+      new Object[] {"text/plain", "text/plain"},
+      new Object[] {"  leading and trailing \t", "leading and trailing"},
+      new Object[] {"value   with    runs", "value with runs"},
+      new Object[] {"   ", ""},
+      new Object[] {"tab\t\tkept", "tab\t\tkept"}
+    };
+  }
+
+  @Test(dataProvider = "headerValues")
+  public void normalizeHeaderValueTest(String value, String expected) {
+    Assert.assertEquals(HeaderNormalizer.normalizeValue(value), expected, value);
+  }
+
+  @Test
+  public void lowerCaseHeaderNameTest() {
+    Assert.assertSame(HeaderNormalizer.lowerCaseName("Content-Type"), "content-type");
+    Assert.assertSame(HeaderNormalizer.lowerCaseName("X-Amz-Security-Token"), "x-amz-security-token");
+    String name = "x-custom-header";
+    Assert.assertSame(HeaderNormalizer.lowerCaseName(name), name);
+    Assert.assertEquals(HeaderNormalizer.lowerCaseName("X-Custom-Header"), name);
+  }
+
+  @Test
+  public void amzDateFormatTest() {
+    DateTimeFormatter formatter =
+        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    long[] seconds = {0L, 951782399L, 951782400L, 1369353600L, 4107542399L, 253402300799L};
+    for (long second : seconds) {
+      String expected = formatter.format(Instant.ofEpochSecond(second));
+      Assert.assertEquals(new String(AmzDateClock.format(second), StandardCharsets.US_ASCII), expected);
+    }
+    Random random = new Random(17);
+    for (int i = 0; i < 10000; i++) {
+      long second = (long) (random.nextDouble() * 253402300799L);
+      String expected = formatter.format(Instant.ofEpochSecond(second));
+      Assert.assertEquals(new AmzDateClock.Stamp(second).dateTimeStamp, expected);
+    }
+  }
+
+  @DataProvider(name = "endpoints")
+  public Object[][] getEndpoints() {
+    return new Object[][] {
+      new Object[] {
+        "https://examplebucket.s3.amazonaws.com", "examplebucket.s3.amazonaws.com", null
+      },
+      new Object[] {"https://example.com/", "example.com", "/"},
+      new Object[] {"https://example.com:443/v1/api", "example.com", "/v1/api"},
+      new Object[] {"HTTPS://example.com:8443", "example.com:8443", null},
+      new Object[] {"http://localhost:4566/bucket", "localhost:4566", "/bucket"},
+      new Object[] {"http://localhost:80", "localhost", null},
+      new Object[] {"https://[::1]:9000/x", "[::1]:9000", "/x"},
+      new Object[] {"https://[2001:db8::1]", "[2001:db8::1]", null}
+    };
+  }
+
+  @Test(dataProvider = "endpoints")
+  public void endpointTest(String endpoint, String expectedHost, String expectedPath) {
+    Endpoint parsed = Endpoint.parse(endpoint);
+    Assert.assertEquals(parsed.host, expectedHost, endpoint);
+    Assert.assertEquals(parsed.path, expectedPath, endpoint);
+  }
+
+  @DataProvider(name = "badEndpoints")
+  public Object[][] getBadEndpoints() {
+    return new Object[][] {
+      new Object[] {"examplebucket.s3.amazonaws.com"},
+      new Object[] {"ftp://example.com"},
+      new Object[] {"https://"},
+      new Object[] {"https:///path"},
+      new Object[] {"https://user@example.com"},
+      new Object[] {"https://example.com:0"},
+      new Object[] {"https://example.com:http"},
+      new Object[] {"https://[::1"},
+      new Object[] {"https://example.com/?x=1"},
+      new Object[] {"https://example.com#top"}
+    };
+  }
+
+  @Test(dataProvider = "badEndpoints", expectedExceptions = IllegalStateException.class)
+  public void badEndpointTest(String endpoint) {
+    Endpoint.parse(endpoint);
+  }
+
+  @Test
+  public void endpointCacheTest() {
+    String endpoint = "https://cached-" + System.nanoTime() + ".s3.amazonaws.com";
+    Assert.assertSame(Endpoint.of(endpoint), Endpoint.of(endpoint));
+  }
 }
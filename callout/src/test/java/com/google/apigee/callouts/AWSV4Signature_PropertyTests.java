@@ -0,0 +1,66 @@
+// Copyright © 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class AWSV4Signature_PropertyTests extends TestBase {
+
+  @Override
+  boolean isVerbose() {
+    return true;
+  }
+
+  @DataProvider(name = "templates")
+  public Object[][] getTemplates() {
+    return new Object[][] {
+      new Object[] {"plain", "plain", true},
+      new Object[] {"  padded  ", "padded", true},
+      new Object[] {"{a}", "AAA", false},
+      new Object[] {"x{a}y{b.c}z", "xAAAyBCz", false},
+      new Object[] {"{missing}", "", false},
+      new Object[] {"{missing:dflt}", "dflt", false},
+      new Object[] {"{missing:}", "", false},
+      new Object[] {"{a:dflt}", "AAA", false},
+      new Object[] {"{a:x:y}", "AAA", false},
+      new Object[] {"{ a}", "{ a}", true},
+      new Object[] {"{:a}", "{:a}", true},
+      new Object[] {"{{a}", "{AAA", false},
+      new Object[] {"{a}}", "AAA}", false},
+      new Object[] {"a{b.c", "a{b.c", true},
+      new Object[] {"{}", "{}", true},
+      new Object[] {"line1\n{a}", "line1\nAAA", false}
+    };
+  }
+
+  @Test(dataProvider = "templates")
+  public void resolveTemplate(String spec, String expected, boolean isLiteral) {
+    msgCtxt.setVariable("a", "AAA");
+    msgCtxt.setVariable("b.c", "BC");
+    PropertyTemplate template = PropertyTemplate.compile(spec);
+    Assert.assertEquals(template.resolve(msgCtxt), expected, spec);
+    Assert.assertEquals(template.isLiteral(), isLiteral, spec);
+  }
+
+  @Test
+  public void blankTemplateIsUnset() {
+    Assert.assertNull(PropertyTemplate.compile(null));
+    Assert.assertNull(PropertyTemplate.compile(""));
+    Assert.assertNull(PropertyTemplate.compile("   "));
+  }
+}
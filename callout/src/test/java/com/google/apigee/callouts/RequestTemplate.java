@@ -0,0 +1,114 @@
+// RequestTemplate.java
+//
+// Copyright © 2024 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.google.apigee.fakes.FakeMessage;
+import com.google.apigee.fakes.FakeMessageContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request to sign, captured once so that fresh, quiet fake messages can be stamped out cheaply
+ * for each call: the source message's variables, headers and content, plus the variables to set on
+ * the message context. The source message is set as the "source" context variable.
+ */
+public class RequestTemplate {
+  final String name;
+  final Map<String, String> messageVariables = new LinkedHashMap<String, String>();
+  final Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+  final Map<String, String> contextVariables = new LinkedHashMap<String, String>();
+  String content = "";
+
+  public RequestTemplate(String name) {
+    this.name = name;
+  }
+
+  /** Captures the request described by the .req file of a test case. */
+  public static RequestTemplate of(TestCase tc) {
+    FakeMessage parsed = new FakeMessage();
+    parsed.setVerbose(false);
+    tc.parseInput(parsed);
+
+    RequestTemplate template = new RequestTemplate(tc.getTestName());
+    for (String name : new String[] {"verb", "path", "querystring"}) {
+      Object value = parsed.getVariable(name);
+      if (value != null) {
+        template.messageVariables.put(name, value.toString());
+      }
+    }
+    for (String name : parsed.getHeaderNames()) {
+      template.headers.put(name, new ArrayList<String>(parsed.getHeaders(name)));
+    }
+    template.content = parsed.getContent();
+    return template;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getHeader(String name) {
+    List<String> values = headers.get(name.toLowerCase());
+    return (values == null || values.isEmpty()) ? null : values.get(0);
+  }
+
+  public RequestTemplate setHeader(String name, String value) {
+    List<String> values = new ArrayList<String>();
+    values.add(value);
+    headers.put(name.toLowerCase(), values);
+    return this;
+  }
+
+  public RequestTemplate setMessageVariable(String name, String value) {
+    messageVariables.put(name, value);
+    return this;
+  }
+
+  public RequestTemplate setContextVariable(String name, String value) {
+    contextVariables.put(name, value);
+    return this;
+  }
+
+  public RequestTemplate setContent(String content) {
+    this.content = content;
+    return this;
+  }
+
+  public FakeMessageContext newContext() {
+    FakeMessage message = new FakeMessage();
+    message.setVerbose(false);
+    for (Map.Entry<String, String> entry : messageVariables.entrySet()) {
+      message.setVariable(entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+      for (String value : entry.getValue()) {
+        message.setHeader(entry.getKey(), value);
+      }
+    }
+    message.setContent(content);
+    FakeMessageContext msgCtxt = new FakeMessageContext(message);
+    msgCtxt.setVerbose(false);
+    msgCtxt.setVariable("source", message);
+    for (Map.Entry<String, String> entry : contextVariables.entrySet()) {
+      msgCtxt.setVariable(entry.getKey(), entry.getValue());
+    }
+    return msgCtxt;
+  }
+}
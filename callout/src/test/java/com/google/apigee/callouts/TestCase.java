@@ -87,6 +87,7 @@ public class TestCase implements Comparable {
 
     if (parts.length == 2) {
       String query = parts[1];
+      message.setVariable("querystring", query);
       String[] nameValuePairs = query.split("&");
       for (String nameValuePair : nameValuePairs) {
         parts = nameValuePair.split("=", 2);
@@ -22,8 +22,11 @@ import com.apigee.flow.message.MessageContext;
 import com.apigee.flow.message.TransportMessage;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -34,7 +37,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 public class FakeMessage implements Message {
-  private InputStream messageContentStream;
+  private byte[] messageContent;
   private Map<String, Object> variables;
   private Map<String, Object> headers;
   private Map<String, Object> qparams;
@@ -53,15 +56,26 @@ public class FakeMessage implements Message {
   }
 
   public void setContent(InputStream inStream) {
-    this.messageContentStream = inStream;
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = inStream.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+      this.messageContent = out.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   public void setContent(String content) {
-    this.messageContentStream = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    this.messageContent = content.getBytes(StandardCharsets.UTF_8);
   }
 
   public InputStream getContentAsStream() {
-    return messageContentStream;
+    // like a buffered message in Apigee, each call returns a new stream over the content
+    return new ByteArrayInputStream(messageContent);
   }
 
   public String getContent() {